@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Checks credentials and hands out session tokens. Password hashing is deliberately slow, so it runs on a small
+// pool of its own with a bounded queue: a burst of logins waits there (or is turned away with a
+// RejectedExecutionException once the queue is full) instead of tying up the threads that serve bookings.
+// A successful login yields a random token; later requests are authorized by looking it up in a map, with no
+// credential check. Sessions expire after sessionTtlMillis without use.
+public class Authenticator {
+    private static final int TOKEN_BYTES = 32;
+    private static final long SWEEP_SECONDS = 60;
+
+    private final Map<String, User> users;
+    private final UserRepository userRepository;
+    private final long sessionTtlMillis;
+    private final ThreadPoolExecutor hashingPool;
+    private final ScheduledExecutorService sweeper;
+    private final Map<String, Session> sessions;
+    private final SecureRandom random;
+    // Verified against when the user ID is unknown, so a wrong ID takes as long to reject as a wrong password.
+    private final String dummyHash;
+
+    public Authenticator(Map<String, User> users, UserRepository userRepository, int threads, int queueCapacity,
+            long sessionTtlMillis) {
+        this.users = users;
+        this.userRepository = userRepository;
+        this.sessionTtlMillis = sessionTtlMillis;
+        this.sessions = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashingPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::removeExpiredSessions, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+        this.dummyHash = PasswordHasher.hash("");
+    }
+
+    // Completes with a session token, or with null when the credentials are wrong. Fails with a
+    // RejectedExecutionException when too many logins are already waiting.
+    public CompletableFuture<String> login(String userId, String name, String password) {
+        return submit(() -> {
+            User user = users.get(userId);
+            String stored = user == null ? dummyHash : user.getPassword();
+            boolean valid = PasswordHasher.verify(password, stored) && user != null && user.getName().equals(name);
+            if (!valid) {
+                return null;
+            }
+            if (!PasswordHasher.isHashed(stored)) {
+                upgrade(user, password);
+            }
+            return openSession(user);
+        });
+    }
+
+    public CompletableFuture<String> hashPassword(String password) {
+        return submit(() -> PasswordHasher.hash(password));
+    }
+
+    // The user the token belongs to, or null when it is unknown or has expired. Each use extends the session.
+    public User authorize(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.expiresAt < now) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.expiresAt = now + sessionTtlMillis;
+        return session.user;
+    }
+
+    public void logout(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    // Ends every session of the user, e.g. after the account was deleted.
+    public void logoutUser(String userId) {
+        sessions.values().removeIf(session -> session.user.getUserId().equals(userId));
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getQueuedRequests() {
+        return hashingPool.getQueue().size();
+    }
+
+    public void shutdown() {
+        hashingPool.shutdown();
+        sweeper.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, hashingPool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private String openSession(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(user, System.currentTimeMillis() + sessionTtlMillis));
+        return token;
+    }
+
+    // Hashes every password still held as plaintext, e.g. before the user table is written to a snapshot. This is
+    // slow, about as slow as a login, for each such account, but each account is only hashed once.
+    public void upgradePasswords() {
+        for (User user : users.values()) {
+            String stored = user.getPassword();
+            if (!PasswordHasher.isHashed(stored)) {
+                upgrade(user, stored);
+            }
+        }
+    }
+
+    // Plaintext passwords from older user files are replaced by a hash the first time they are used. If the hash
+    // cannot be saved the login still succeeds and the upgrade is retried next time.
+    private void upgrade(User user, String password) {
+        String hash = PasswordHasher.hash(password);
+        try {
+            userRepository.updatePassword(user, hash);
+        } catch (IOException e) {
+            System.err.println("Could not save upgraded password for " + user.getUserId() + ": " + e.getMessage());
+        }
+    }
+
+    private void removeExpiredSessions() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAt < now);
+    }
+
+    private static class Session {
+        final User user;
+        volatile long expiresAt;
+
+        Session(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Remembers recent availability answers per (branch, type, date, start, end). Each answer is stamped with the
+// branch's availability version for (type, date), read before the answer was computed; a booking, cancellation
+// or room change for that type and date moves the version on, so only the answers it could affect go stale.
+// Entries also expire after a fixed time. Lookups take no lock: each hit only stamps the entry with the time it was
+// used, and once the cache overflows one thread trims it back to TRIM_RATIO of its size, dropping the least
+// recently used entries. Eviction is thus approximately LRU, in batches.
+public class AvailabilityCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+    private static final double TRIM_RATIO = 0.9;
+    // A hit restamps an entry only if its stamp is older than this, so hot entries are not written on every read.
+    private static final long TOUCH_NANOS = 1_000_000;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AvailabilityCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public AvailabilityCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    public List<SmartRoom> getAvailableRooms(Branch branch, String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        Key key = new Key(branch, type, date, startTime, endTime);
+        long version = branch.getAvailabilityVersion(type, date);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.version == version && now - entry.createdNanos < ttlNanos) {
+                if (now - entry.lastUsedNanos > TOUCH_NANOS) {
+                    entry.lastUsedNanos = now;
+                }
+                hits.increment();
+                return entry.rooms;
+            }
+            if (entry.version != version) {
+                invalidations.increment();
+            } else {
+                expirations.increment();
+            }
+        }
+        misses.increment();
+
+        List<SmartRoom> rooms = List.copyOf(branch.getAvailableRooms(type, date, startTime, endTime));
+        entries.compute(key, (k, current) -> current == null || current.version <= version
+                ? new Entry(rooms, version, now) : current);
+        if (entries.size() > maxEntries) {
+            trim();
+        }
+        return rooms;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Drops the least recently used entries until TRIM_RATIO of maxEntries are left. Threads that find a trim
+    // already running leave it to that one.
+    private void trim() {
+        if (!trimLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = entries.size() - (int) (maxEntries * TRIM_RATIO);
+            if (excess <= 0) {
+                return;
+            }
+            long[] stamps = entries.values().stream().mapToLong(entry -> entry.lastUsedNanos).toArray();
+            Arrays.sort(stamps);
+            long oldest = stamps[Math.min(excess, stamps.length) - 1];
+            for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+                if (excess > 0 && entry.getValue().lastUsedNanos <= oldest
+                        && entries.remove(entry.getKey(), entry.getValue())) {
+                    evictions.increment();
+                    excess--;
+                }
+            }
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d hits=%d misses=%d invalidations=%d expirations=%d evictions=%d hitRatio=%.3f",
+                size(), getHits(), getMisses(), getInvalidations(), getExpirations(), getEvictions(), getHitRatio());
+    }
+
+    private static final class Key {
+        private final Branch branch;
+        private final String type;
+        private final LocalDate date;
+        private final LocalTime startTime;
+        private final LocalTime endTime;
+        private final int hash;
+
+        Key(Branch branch, String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+            this.branch = branch;
+            this.type = type;
+            this.date = date;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.hash = Objects.hash(System.identityHashCode(branch), type, date, startTime, endTime);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return branch == other.branch && type.equals(other.type) && date.equals(other.date)
+                    && startTime.equals(other.startTime) && endTime.equals(other.endTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final List<SmartRoom> rooms;
+        final long version;
+        final long createdNanos;
+        volatile long lastUsedNanos;
+
+        Entry(List<SmartRoom> rooms, long version, long createdNanos) {
+            this.rooms = rooms;
+            this.version = version;
+            this.createdNanos = createdNanos;
+            this.lastUsedNanos = createdNanos;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,348 @@
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+
+// Answers "which rooms of type T are free for [start, end) on date D" from per-slot bitsets of booked rooms,
+// so the cost depends on the number of slots asked about and not on how many rooms there are.
+public class AvailabilityIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int slotMinutes;
+    private final int slotsPerDay;
+    private final Map<String, TypeIndex> types;
+    private final Map<SmartRoom, RoomEntry> entries;
+
+    public AvailabilityIndex() {
+        this(RoomSchedule.DEFAULT_SLOT_MINUTES);
+    }
+
+    public AvailabilityIndex(int slotMinutes) {
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = RoomSchedule.MINUTES_PER_DAY / slotMinutes;
+        this.types = new ConcurrentHashMap<>();
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    public synchronized void addRoom(SmartRoom room) {
+        if (entries.containsKey(room)) {
+            return;
+        }
+        if (room.getSchedule().getSlotMinutes() % slotMinutes != 0) {
+            throw new IllegalArgumentException("Room " + room.getRoomId() + " uses " + room.getSchedule().getSlotMinutes()
+                    + " minute slots, which do not line up with the " + slotMinutes + " minute availability index.");
+        }
+        TypeIndex typeIndex = types.computeIfAbsent(room.getType(), k -> new TypeIndex());
+        RoomEntry entry = new RoomEntry(typeIndex, typeIndex.register(room));
+        entries.put(room, entry);
+        room.getSchedule().replayBookings(entry);
+        room.getSchedule().addListener(entry);
+    }
+
+    public synchronized void removeRoom(SmartRoom room) {
+        RoomEntry entry = entries.remove(room);
+        if (entry == null) {
+            return;
+        }
+        room.getSchedule().removeListener(entry);
+        entry.typeIndex.unregister(entry.position);
+    }
+
+    public List<SmartRoom> getAvailableRooms(String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        List<SmartRoom> availableRooms = new ArrayList<>();
+        TypeIndex typeIndex = types.get(type);
+        if (typeIndex == null) {
+            return availableRooms;
+        }
+        long[] free = typeIndex.freeRooms(date, startSlot(startTime), endSlot(startTime, endTime));
+        for (int word = 0; word < free.length; word++) {
+            long bits = free[word];
+            while (bits != 0) {
+                int position = (word << 6) + Long.numberOfTrailingZeros(bits);
+                SmartRoom room = typeIndex.roomAt(position);
+                if (room != null) {
+                    availableRooms.add(room);
+                }
+                bits &= bits - 1;
+            }
+        }
+        return availableRooms;
+    }
+
+    public int countAvailableRooms(String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        TypeIndex typeIndex = types.get(type);
+        if (typeIndex == null) {
+            return 0;
+        }
+        int count = 0;
+        for (long bits : typeIndex.freeRooms(date, startSlot(startTime), endSlot(startTime, endTime))) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    // For every room of the type with at least minCapacity seats that has durationMinutes free between fromMinute and
+    // toMinute on the date, passes the room and its earliest free start (in minutes) to the consumer. Rooms are
+    // tested 64 at a time per slot, so a fully booked day costs a few word operations instead of a lookup per room.
+    public void findFirstFreeStarts(String type, int minCapacity, LocalDate date, int fromMinute, int toMinute,
+            int durationMinutes, ObjIntConsumer<SmartRoom> consumer) {
+        TypeIndex typeIndex = types.get(type);
+        if (typeIndex == null) {
+            return;
+        }
+        int from = (Math.max(fromMinute, 0) + slotMinutes - 1) / slotMinutes;
+        int to = Math.min(toMinute, RoomSchedule.MINUTES_PER_DAY) / slotMinutes;
+        int length = Math.max(1, (durationMinutes + slotMinutes - 1) / slotMinutes);
+        if (from + length > to) {
+            return;
+        }
+        long[] eligible = typeIndex.roomsWithCapacity(minCapacity);
+        int[] firstFree = new int[eligible.length << 6];
+        Arrays.fill(firstFree, -1);
+        DayIndex day = typeIndex.days.get(date);
+        if (day == null) {
+            for (int word = 0; word < eligible.length; word++) {
+                for (long bits = eligible[word]; bits != 0; bits &= bits - 1) {
+                    firstFree[(word << 6) + Long.numberOfTrailingZeros(bits)] = from;
+                }
+            }
+        } else {
+            day.firstFreeStarts(eligible, from, to, length, firstFree);
+        }
+        for (int position = 0; position < firstFree.length; position++) {
+            if (firstFree[position] >= 0) {
+                SmartRoom room = typeIndex.roomAt(position);
+                if (room != null) {
+                    consumer.accept(room, firstFree[position] * slotMinutes);
+                }
+            }
+        }
+    }
+
+    // The free room with the fewest seats that still holds headcount people, or null when none is free. A null type
+    // considers rooms of every type. Within a type, rooms are grouped by capacity in ascending order, so the search
+    // starts at the smallest capacity that fits and stops at the first one with a free room.
+    public SmartRoom findBestFit(String type, int headcount, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        int from = startSlot(startTime);
+        int to = endSlot(startTime, endTime);
+        SmartRoom best = null;
+        for (Map.Entry<String, TypeIndex> entry : types.entrySet()) {
+            if (type != null && !type.equals(entry.getKey())) {
+                continue;
+            }
+            int limit = best == null ? Integer.MAX_VALUE : best.getCapacity();
+            SmartRoom room = entry.getValue().bestFit(headcount, limit, date, from, to);
+            if (room != null) {
+                best = room;
+            }
+        }
+        return best;
+    }
+
+    // Changes whenever the answer for (type, date) may have changed: a room of that type was booked or freed on
+    // that date, or a room of that type was added or removed. Bumped only after the index itself is updated, so a
+    // version read before a lookup is never newer than the data the lookup sees.
+    public long version(String type, LocalDate date) {
+        TypeIndex typeIndex = types.get(type);
+        return typeIndex == null ? 0 : typeIndex.version(date);
+    }
+
+    private int startSlot(LocalTime start) {
+        return start.toSecondOfDay() / 60 / slotMinutes;
+    }
+
+    private int endSlot(LocalTime start, LocalTime end) {
+        return (RoomSchedule.endMinuteOfDay(start, end) + slotMinutes - 1) / slotMinutes;
+    }
+
+    private class TypeIndex implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final List<SmartRoom> rooms = new ArrayList<>();
+        // Positions of the rooms with each capacity.
+        private final NavigableMap<Integer, long[]> byCapacity = new TreeMap<>();
+        // Bitset of positions that currently hold a room; replaced wholesale so readers never see it half-updated.
+        private volatile long[] members = new long[0];
+        private final Map<LocalDate, DayIndex> days = new ConcurrentHashMap<>();
+        private volatile long membershipVersion;
+
+        synchronized int register(SmartRoom room) {
+            int position = rooms.indexOf(null);
+            if (position < 0) {
+                position = rooms.size();
+                rooms.add(room);
+            } else {
+                rooms.set(position, room);
+            }
+            long[] updated = Arrays.copyOf(members, Math.max(members.length, (position >>> 6) + 1));
+            updated[position >>> 6] |= 1L << position;
+            members = updated;
+            long[] sameCapacity = byCapacity.getOrDefault(room.getCapacity(), new long[0]);
+            sameCapacity = Arrays.copyOf(sameCapacity, Math.max(sameCapacity.length, (position >>> 6) + 1));
+            sameCapacity[position >>> 6] |= 1L << position;
+            byCapacity.put(room.getCapacity(), sameCapacity);
+            membershipVersion++;
+            return position;
+        }
+
+        synchronized void unregister(int position) {
+            long[] sameCapacity = byCapacity.get(rooms.get(position).getCapacity());
+            sameCapacity[position >>> 6] &= ~(1L << position);
+            rooms.set(position, null);
+            long[] updated = members.clone();
+            updated[position >>> 6] &= ~(1L << position);
+            members = updated;
+            for (DayIndex day : days.values()) {
+                day.update(position, 0, slotsPerDay, false);
+            }
+            membershipVersion++;
+        }
+
+        synchronized long[] roomsWithCapacity(int minCapacity) {
+            long[] eligible = new long[members.length];
+            for (long[] sameCapacity : byCapacity.tailMap(minCapacity, true).values()) {
+                for (int word = 0; word < sameCapacity.length; word++) {
+                    eligible[word] |= sameCapacity[word];
+                }
+            }
+            return eligible;
+        }
+
+        // The first free room with at least minCapacity and fewer than belowCapacity seats, smallest capacity first.
+        SmartRoom bestFit(int minCapacity, int belowCapacity, LocalDate date, int from, int to) {
+            if (minCapacity >= belowCapacity) {
+                return null;
+            }
+            long[] free = freeRooms(date, from, to);
+            synchronized (this) {
+                for (long[] sameCapacity : byCapacity.subMap(minCapacity, true, belowCapacity, false).values()) {
+                    for (int word = 0; word < sameCapacity.length && word < free.length; word++) {
+                        long bits = sameCapacity[word] & free[word];
+                        if (bits != 0) {
+                            return rooms.get((word << 6) + Long.numberOfTrailingZeros(bits));
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        synchronized SmartRoom roomAt(int position) {
+            return position < rooms.size() ? rooms.get(position) : null;
+        }
+
+        // Day indexes are never discarded, so their counters only ever grow. The membership count sits in the
+        // high bits; a single day would need 2^40 changes before the two could collide.
+        long version(LocalDate date) {
+            DayIndex day = days.get(date);
+            return (membershipVersion << 40) + (day == null ? 0 : day.version);
+        }
+
+        long[] freeRooms(LocalDate date, int from, int to) {
+            long[] free = members.clone();
+            DayIndex day = days.get(date);
+            if (day != null) {
+                day.clearBusy(free, from, to);
+            }
+            return free;
+        }
+
+        void update(LocalDate date, int position, int from, int to, boolean booked) {
+            DayIndex day = booked ? days.computeIfAbsent(date, k -> new DayIndex()) : days.get(date);
+            if (day != null) {
+                day.update(position, from, to, booked);
+            }
+        }
+    }
+
+    // rows[word][slot] holds the booked bits for rooms (word * 64) .. (word * 64 + 63); rows with no bookings stay null.
+    private class DayIndex implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private long[][] rows = new long[0][];
+        private volatile long version;
+
+        synchronized void update(int position, int from, int to, boolean booked) {
+            int word = position >>> 6;
+            if (word >= rows.length) {
+                if (!booked) {
+                    return;
+                }
+                rows = Arrays.copyOf(rows, word + 1);
+            }
+            if (rows[word] == null) {
+                if (!booked) {
+                    return;
+                }
+                rows[word] = new long[slotsPerDay];
+            }
+            long bit = 1L << position;
+            long[] row = rows[word];
+            for (int slot = from; slot < to; slot++) {
+                row[slot] = booked ? row[slot] | bit : row[slot] & ~bit;
+            }
+            version++;
+        }
+
+        // Slides a window of length slots across [from, to); a room's earliest start is the first window in which
+        // its bit is clear in every slot. Rooms drop out of the scan as soon as they have been placed.
+        synchronized void firstFreeStarts(long[] eligible, int from, int to, int length, int[] firstFree) {
+            for (int word = 0; word < eligible.length; word++) {
+                long remaining = eligible[word];
+                long[] row = word < rows.length ? rows[word] : null;
+                for (int start = from; remaining != 0 && start + length <= to; start++) {
+                    long busy = 0;
+                    if (row != null) {
+                        for (int slot = start; slot < start + length; slot++) {
+                            busy |= row[slot];
+                        }
+                    }
+                    for (long free = remaining & ~busy; free != 0; free &= free - 1) {
+                        firstFree[(word << 6) + Long.numberOfTrailingZeros(free)] = start;
+                    }
+                    remaining &= busy;
+                }
+            }
+        }
+
+        synchronized void clearBusy(long[] free, int from, int to) {
+            for (int word = 0; word < free.length && word < rows.length; word++) {
+                long[] row = rows[word];
+                if (row == null) {
+                    continue;
+                }
+                long busy = 0;
+                for (int slot = from; slot < to; slot++) {
+                    busy |= row[slot];
+                }
+                free[word] &= ~busy;
+            }
+        }
+    }
+
+    private class RoomEntry implements ScheduleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final TypeIndex typeIndex;
+        private final int position;
+
+        RoomEntry(TypeIndex typeIndex, int position) {
+            this.typeIndex = typeIndex;
+            this.position = position;
+        }
+
+        @Override
+        public void slotsBooked(LocalDate date, int fromMinute, int toMinute) {
+            typeIndex.update(date, position, fromMinute / slotMinutes, toMinute / slotMinutes, true);
+        }
+
+        @Override
+        public void slotsFreed(LocalDate date, int fromMinute, int toMinute) {
+            typeIndex.update(date, position, fromMinute / slotMinutes, toMinute / slotMinutes, false);
+        }
+    }
+}
\ No newline at end of file
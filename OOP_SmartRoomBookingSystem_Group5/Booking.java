@@ -1,24 +1,68 @@
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Booking implements Serializable {
     private static final long serialVersionUID = 1L;
-    private static int bookingCounter = 1;
+    private static final AtomicInteger bookingCounter = new AtomicInteger(1);
     private String bookingId;
     private Customer customer;
     private Branch branch;
     private SmartRoom room;
     private LocalDate date;
     private LocalTime time;
+    private LocalTime endTime;
+    // Number of people, or 0 when not known (bookings made without one, or saved before it was recorded).
+    private int headcount;
+    private volatile BookingStatus status;
 
     public Booking(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time) {
-        this.bookingId = "BK" + String.format("%04d", bookingCounter++);
+        this(customer, branch, room, date, time, RoomSchedule.defaultEndTime(time));
+    }
+
+    public Booking(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time, LocalTime endTime) {
+        this(formatId(bookingCounter.getAndIncrement()), customer, branch, room, date, time, endTime);
+    }
+
+    Booking(String bookingId, Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time, LocalTime endTime) {
+        this(bookingId, customer, branch, room, date, time, endTime, BookingStatus.CONFIRMED);
+    }
+
+    Booking(String bookingId, Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time,
+            LocalTime endTime, BookingStatus status) {
+        this.bookingId = bookingId;
         this.customer = customer;
         this.branch = branch;
         this.room = room;
         this.date = date;
         this.time = time;
+        this.endTime = endTime;
+        this.status = status;
+    }
+
+    static String formatId(int number) {
+        String digits = Integer.toString(number);
+        switch (digits.length()) {
+            case 1:
+                return "BK000" + digits;
+            case 2:
+                return "BK00" + digits;
+            case 3:
+                return "BK0" + digits;
+            default:
+                return "BK" + digits;
+        }
+    }
+
+    // Keeps freshly generated IDs clear of ones loaded from disk.
+    static void advanceCounterPast(String bookingId) {
+        try {
+            int number = Integer.parseInt(bookingId.substring(2));
+            bookingCounter.accumulateAndGet(number + 1, Math::max);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+        }
     }
 
     public String getBookingId() {
@@ -45,13 +89,40 @@ public class Booking implements Serializable {
         return time;
     }
 
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public int getHeadcount() {
+        return headcount;
+    }
+
+    void setHeadcount(int headcount) {
+        this.headcount = headcount;
+    }
+
+    public BookingStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(BookingStatus status) {
+        this.status = status;
+    }
+
+    // True once the booked time is over; an end time at or before the start means the booking ran to midnight.
+    public boolean hasEnded(LocalDateTime now) {
+        LocalDateTime end = endTime.isAfter(time) ? date.atTime(endTime) : date.plusDays(1).atStartOfDay();
+        return !end.isAfter(now);
+    }
+
     public void display() {
         System.out.println("\n=== Booking Details ===");
         System.out.println("Booking ID: " + bookingId);
         System.out.println("Branch: " + branch.getName());
         System.out.println("Room: " + room);
         System.out.println("Date: " + date);
-        System.out.println("Time: " + time);
+        System.out.println("Time: " + time + " - " + endTime);
+        System.out.println("Status: " + status.getDisplayName());
         System.out.println("Customer ID: " + customer.getUserId());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,234 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Sealed monthly segments of completed bookings, one gzip-compressed file per month in journal record format. A
+// recurring series is archived month by month, as one series record per month holding that month's occurrences.
+// Segments are only read when history is asked for, and the few most recently read months are kept in memory.
+public class BookingArchive {
+    private static final String PREFIX = "bookings-";
+    private static final String SUFFIX = ".seg.gz";
+    private static final int CACHED_MONTHS = 3;
+
+    private final Path directory;
+    private final Map<String, User> users;
+    private final List<Branch> branches;
+    private final Map<YearMonth, List<Booking>> cache;
+
+    public BookingArchive(String directory, Map<String, User> users, List<Branch> branches) {
+        this.directory = Paths.get(directory);
+        this.users = users;
+        this.branches = branches;
+        this.cache = new LinkedHashMap<YearMonth, List<Booking>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<YearMonth, List<Booking>> eldest) {
+                return size() > CACHED_MONTHS;
+            }
+        };
+    }
+
+    // Adds bookings, and series that each lie within one month, to their months' segments. A segment that already
+    // exists is rewritten with the new records merged in by ID, so archiving the same booking twice (say after a
+    // crash before the journal was compacted) leaves one copy. Each segment is replaced atomically.
+    public synchronized void archive(List<Booking> bookings, List<RecurringBooking> series) throws IOException {
+        Map<YearMonth, Map<String, String>> byMonth = new HashMap<>();
+        for (Booking booking : bookings) {
+            byMonth.computeIfAbsent(YearMonth.from(booking.getDate()), k -> new LinkedHashMap<>())
+                    .put(booking.getBookingId(), BookingJournal.formatCreate(booking));
+        }
+        for (RecurringBooking recurring : series) {
+            byMonth.computeIfAbsent(YearMonth.from(recurring.getFirstDate()), k -> new LinkedHashMap<>())
+                    .put(recurring.getSeriesId(), BookingJournal.formatSeries(recurring));
+        }
+        Files.createDirectories(directory);
+        for (Map.Entry<YearMonth, Map<String, String>> month : byMonth.entrySet()) {
+            Path segment = segmentPath(month.getKey());
+            Map<String, String> records = new LinkedHashMap<>();
+            for (String line : readLines(segment)) {
+                String[] fields = BookingJournal.parseRecord(line);
+                if (fields != null) {
+                    records.put(fields[1], line);
+                }
+            }
+            records.putAll(month.getValue());
+
+            Path tmp = segment.resolveSibling(segment.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+                for (String record : records.values()) {
+                    bw.write(record);
+                    bw.newLine();
+                }
+                bw.flush();
+                gzip.finish();
+                // The journal copies of these bookings are dropped afterwards, so the segment must be on disk first.
+                channel.force(true);
+            }
+            Files.move(tmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cache.remove(month.getKey());
+        }
+    }
+
+    public synchronized List<YearMonth> getMonths() throws IOException {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                for (Path segment : segments) {
+                    String name = segment.getFileName().toString();
+                    months.add(YearMonth.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                }
+            }
+        }
+        return new ArrayList<>(months);
+    }
+
+    // Completed bookings of one month. Records whose customer, branch or room no longer exists are left out.
+    public synchronized List<Booking> getBookings(YearMonth month) throws IOException {
+        List<Booking> bookings = cache.get(month);
+        if (bookings == null) {
+            bookings = Collections.unmodifiableList(load(month));
+            cache.put(month, bookings);
+        }
+        return bookings;
+    }
+
+    public List<Booking> getBookingsByUserId(String userId) throws IOException {
+        List<Booking> userBookings = new ArrayList<>();
+        for (YearMonth month : getMonths()) {
+            for (Booking booking : getBookings(month)) {
+                if (booking.getCustomer().getUserId().equals(userId)) {
+                    userBookings.add(booking);
+                }
+            }
+        }
+        return userBookings;
+    }
+
+    // Every booking and series occurrence recorded for the month, as written: unlike getBookings(), records whose
+    // customer, branch or room no longer exists are included, since they still took up the room at the time.
+    public synchronized List<Slot> getSlots(YearMonth month) throws IOException {
+        List<Slot> slots = new ArrayList<>();
+        for (String line : readLines(segmentPath(month))) {
+            String[] fields = BookingJournal.parseRecord(line);
+            try {
+                if (fields != null && fields[0].equals(BookingJournal.CREATE)) {
+                    LocalTime start = LocalTime.parse(fields[6]);
+                    LocalTime end = fields[7] == null ? RoomSchedule.defaultEndTime(start) : LocalTime.parse(fields[7]);
+                    slots.add(new Slot(fields[1], fields[3], fields[4], LocalDate.parse(fields[5]), start, end));
+                } else if (fields != null && fields[0].equals(BookingJournal.SERIES)) {
+                    List<LocalDate> dates = RecurringBooking.patternDates(RecurringBooking.Pattern.fromString(fields[5]),
+                            LocalDate.parse(fields[6]), LocalDate.parse(fields[7]));
+                    if (!fields[10].isEmpty()) {
+                        for (String skipped : fields[10].split(",")) {
+                            dates.remove(LocalDate.parse(skipped));
+                        }
+                    }
+                    for (LocalDate date : dates) {
+                        slots.add(new Slot(fields[1], fields[3], fields[4], date, LocalTime.parse(fields[8]),
+                                LocalTime.parse(fields[9])));
+                    }
+                }
+            } catch (DateTimeException | IllegalArgumentException e) {
+                // The archive only holds records the journal accepted; one that no longer parses is left out.
+            }
+        }
+        return slots;
+    }
+
+    private List<Booking> load(YearMonth month) throws IOException {
+        Map<String, Branch> branchesByName = new HashMap<>();
+        for (Branch branch : branches) {
+            branchesByName.put(branch.getName(), branch);
+        }
+        List<Booking> bookings = new ArrayList<>();
+        for (String line : readLines(segmentPath(month))) {
+            String[] fields = BookingJournal.parseRecord(line);
+            if (fields == null || !fields[0].equals(BookingJournal.CREATE)) {
+                continue;
+            }
+            User user = users.get(fields[2]);
+            Branch branch = branchesByName.get(fields[3]);
+            SmartRoom room = branch == null ? null : branch.getRoomById(fields[4]);
+            if (!(user instanceof Customer) || room == null) {
+                continue;
+            }
+            LocalTime start = LocalTime.parse(fields[6]);
+            LocalTime end = fields[7] == null ? RoomSchedule.defaultEndTime(start) : LocalTime.parse(fields[7]);
+            Booking booking = new Booking(fields[1], (Customer) user, branch, room, LocalDate.parse(fields[5]), start,
+                    end, BookingStatus.COMPLETED);
+            if (fields[8] != null) {
+                booking.setHeadcount(Integer.parseInt(fields[8]));
+            }
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+
+    private static List<String> readLines(Path segment) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(segment)) {
+            return lines;
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(segment)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private Path segmentPath(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX);
+    }
+
+    // One archived booking, or one occurrence of an archived series (id is then the series ID).
+    public static class Slot {
+        public final String id;
+        public final String branchName;
+        public final String roomId;
+        public final LocalDate date;
+        public final LocalTime startTime;
+        public final LocalTime endTime;
+
+        Slot(String id, String branchName, String roomId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+            this.id = id;
+            this.branchName = branchName;
+            this.roomId = roomId;
+            this.date = date;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+    }
+}
\ No newline at end of file
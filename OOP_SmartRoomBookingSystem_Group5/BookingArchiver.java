@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodic roll-over. Bookings whose time is over are marked completed; once a month is over its bookings, and the
+// occurrences of recurring series that fell in it, are sealed into the archive and dropped from memory, after
+// which the live files are rewritten without them. The scheduled runs happen on a background thread while the
+// console may be waiting for input, so a failure is not printed: it is kept until the next run succeeds, and the
+// admin menu shows it.
+public class BookingArchiver {
+    // Rewrites the live booking files without the archived bookings.
+    public interface LiveBookingWriter {
+        void write() throws IOException;
+    }
+
+    private final BookingManager bookingManager;
+    private final BookingArchive archive;
+    private final LiveBookingWriter persistLiveBookings;
+    private ScheduledExecutorService scheduler;
+    private volatile String lastFailure;
+
+    public BookingArchiver(BookingManager bookingManager, BookingArchive archive, LiveBookingWriter persistLiveBookings) {
+        this.bookingManager = bookingManager;
+        this.archive = archive;
+        this.persistLiveBookings = persistLiveBookings;
+    }
+
+    // Returns how many bookings and series were moved, in whole or in part, to the archive.
+    public synchronized int rollOver(LocalDateTime now) throws IOException {
+        bookingManager.completeElapsedBookings(now);
+
+        LocalDate currentMonth = now.toLocalDate().withDayOfMonth(1);
+        List<Booking> sealed = bookingManager.getBookingsBefore(currentMonth);
+        List<RecurringBooking> sealedSeries = bookingManager.getSeriesBefore(currentMonth);
+        if (sealed.isEmpty() && sealedSeries.isEmpty()) {
+            return 0;
+        }
+        List<RecurringBooking> sealedMonths = new ArrayList<>();
+        for (RecurringBooking recurring : sealedSeries) {
+            for (YearMonth month = YearMonth.from(recurring.getFirstDate()); month.atDay(1).isBefore(currentMonth);
+                    month = month.plusMonths(1)) {
+                RecurringBooking part = recurring.between(month.atDay(1), month.atEndOfMonth());
+                if (part != null) {
+                    sealedMonths.add(part);
+                }
+            }
+        }
+        archive.archive(sealed, sealedMonths);
+        // The archived days keep counting towards occupancy reports after their bookings leave memory.
+        for (Booking booking : sealed) {
+            booking.getBranch().sealOccupancyBefore(currentMonth);
+        }
+        for (RecurringBooking recurring : sealedSeries) {
+            recurring.getBranch().sealOccupancyBefore(currentMonth);
+        }
+        for (Booking booking : sealed) {
+            bookingManager.evictBooking(booking.getBookingId());
+        }
+        for (RecurringBooking recurring : sealedSeries) {
+            bookingManager.evictSeriesBefore(recurring.getSeriesId(), currentMonth);
+        }
+        persistLiveBookings.write();
+        return sealed.size() + sealedSeries.size();
+    }
+
+    // Why the last scheduled run failed, or null if it succeeded (or none has run yet).
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    public synchronized void start(long periodMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "booking-roll-over");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                rollOver(now);
+                lastFailure = null;
+            } catch (IOException | RuntimeException e) {
+                lastFailure = "Booking roll-over at " + now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+                        + " failed: " + e.getMessage();
+            }
+        }, 0, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
\ No newline at end of file
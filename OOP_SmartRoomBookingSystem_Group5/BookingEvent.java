@@ -0,0 +1,70 @@
+// One slot of the BookingEventBus ring. Slots are allocated once and overwritten in place for every event, so
+// a handler must copy out anything it needs to keep after onEvent returns.
+public class BookingEvent {
+    public enum Type {
+        BOOKING_CREATED, BOOKING_CANCELLED, SERIES_CREATED, SERIES_CANCELLED, SCHEDULE_CHANGED
+    }
+
+    Type type;
+    String id;
+    Booking booking;
+    RecurringBooking series;
+    Branch branch;
+    boolean continued;
+    long publishedNanos;
+
+    // An event to hand to BookingEventBus.publishAll.
+    static BookingEvent of(Type type, String id, Booking booking, RecurringBooking series) {
+        BookingEvent event = new BookingEvent();
+        event.set(type, id, booking, series, null, false);
+        return event;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // The booking or series ID the event is about, or the branch name for SCHEDULE_CHANGED.
+    public String getId() {
+        return id;
+    }
+
+    // Set for BOOKING_CREATED only.
+    public Booking getBooking() {
+        return booking;
+    }
+
+    // Set for SERIES_CREATED only.
+    public RecurringBooking getSeries() {
+        return series;
+    }
+
+    // Set for SCHEDULE_CHANGED only.
+    public Branch getBranch() {
+        return branch;
+    }
+
+    // True when more events of the same publishAll run follow this one.
+    public boolean isContinued() {
+        return continued;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    void set(Type type, String id, Booking booking, RecurringBooking series, Branch branch, boolean continued) {
+        this.type = type;
+        this.id = id;
+        this.booking = booking;
+        this.series = series;
+        this.branch = branch;
+        this.continued = continued;
+        this.publishedNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,213 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Ring buffer of booking events in the style of the LMAX Disruptor. The slots are allocated up front and reused,
+// so publishing an event allocates nothing: a producer claims the next sequence with one atomic increment, fills
+// the slot and marks it published. Each consumer runs on its own thread, follows the published sequence and is
+// handed every event in order, in batches of whatever has accumulated since it last looked. Producers only wait
+// when the slowest consumer is a full ring behind.
+public class BookingEventBus {
+    private static final long IDLE_PARK_NANOS = 100_000;
+    private static final long INITIAL_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5_000;
+
+    private final BookingEvent[] ring;
+    private final int mask;
+    // published[i] holds the sequence of the event last made visible in slot i.
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final List<ConsumerThread> consumers = new ArrayList<>();
+    private volatile ConsumerThread[] gating = new ConsumerThread[0];
+    private volatile long gatingCache = -1;
+    private volatile boolean started;
+
+    // The capacity must be a power of two.
+    public BookingEventBus(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Event bus capacity must be a power of two: " + capacity);
+        }
+        this.ring = new BookingEvent[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new BookingEvent();
+            published.set(i, -1);
+        }
+    }
+
+    // Consumers must be added before start() so that none of them misses an event.
+    public synchronized void addConsumer(String name, BookingEventHandler handler) {
+        if (started) {
+            throw new IllegalStateException("Consumers must be added before the event bus is started.");
+        }
+        consumers.add(new ConsumerThread(name, handler));
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        gating = consumers.toArray(new ConsumerThread[0]);
+        started = true;
+        for (ConsumerThread consumer : consumers) {
+            consumer.start();
+        }
+    }
+
+    public void publishBookingCreated(Booking booking) {
+        publish(BookingEvent.Type.BOOKING_CREATED, booking.getBookingId(), booking, null);
+    }
+
+    public void publishBookingCancelled(String bookingId) {
+        publish(BookingEvent.Type.BOOKING_CANCELLED, bookingId, null, null);
+    }
+
+    public void publishSeriesCreated(RecurringBooking recurring) {
+        publish(BookingEvent.Type.SERIES_CREATED, recurring.getSeriesId(), null, recurring);
+    }
+
+    public void publishSeriesCancelled(String seriesId) {
+        publish(BookingEvent.Type.SERIES_CANCELLED, seriesId, null, null);
+    }
+
+    // The branch's operating days, hours or holidays changed; the journal records its schedule as it is when the
+    // event is handled.
+    public void publishScheduleChanged(Branch branch) {
+        write(claimed.incrementAndGet(), BookingEvent.Type.SCHEDULE_CHANGED, branch.getName(), null, null, branch,
+                false);
+    }
+
+    // Publishes the events under consecutive sequences, so no other producer's events come between them. Every
+    // event but the last is marked as continued, which lets consumers treat the run as a unit.
+    public void publishAll(List<BookingEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long first = claimed.addAndGet(events.size()) - events.size() + 1;
+        for (int i = 0; i < events.size(); i++) {
+            BookingEvent event = events.get(i);
+            write(first + i, event.type, event.id, event.booking, event.series, event.branch, i < events.size() - 1);
+        }
+    }
+
+    // Waits until every consumer has handled every event published before the call. Returns false if that did
+    // not happen within the timeout.
+    public boolean drain(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (minimumConsumerSequence() < target) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    // Drains and then stops the consumer threads. Events published afterwards are dropped.
+    public synchronized boolean stop(long timeoutMillis) {
+        boolean drained = drain(timeoutMillis);
+        for (ConsumerThread consumer : consumers) {
+            consumer.running = false;
+            LockSupport.unpark(consumer);
+        }
+        started = false;
+        gating = new ConsumerThread[0];
+        return drained;
+    }
+
+    // Sequence of the last event claimed by a producer; a change made by the calling thread is at or below it.
+    public long getCursor() {
+        return claimed.get();
+    }
+
+    // Events published but not yet handled by the slowest consumer.
+    public long getBacklog() {
+        return claimed.get() - minimumConsumerSequence();
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    private void publish(BookingEvent.Type type, String id, Booking booking, RecurringBooking series) {
+        write(claimed.incrementAndGet(), type, id, booking, series, null, false);
+    }
+
+    private void write(long sequence, BookingEvent.Type type, String id, Booking booking, RecurringBooking series,
+            Branch branch, boolean continued) {
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingCache) {
+            long minimum;
+            while (wrapPoint > (minimum = minimumConsumerSequence())) {
+                LockSupport.parkNanos(1);
+            }
+            gatingCache = minimum;
+        }
+        int index = (int) sequence & mask;
+        ring[index].set(type, id, booking, series, branch, continued);
+        published.lazySet(index, sequence);
+    }
+
+    // Without consumers nothing holds producers back.
+    private long minimumConsumerSequence() {
+        ConsumerThread[] current = gating;
+        long minimum = claimed.get();
+        for (ConsumerThread consumer : current) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    private class ConsumerThread extends Thread {
+        private final BookingEventHandler handler;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private volatile boolean running = true;
+
+        ConsumerThread(String name, BookingEventHandler handler) {
+            super(name);
+            this.handler = handler;
+            setDaemon(true);
+        }
+
+        // A failed event is retried with a growing pause instead of being skipped, so a consumer such as the journal
+        // writer cannot silently lose it. Until it gets through the consumer holds the ring, and once the ring is
+        // full producers wait.
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            long pause = INITIAL_RETRY_MILLIS;
+            while (running) {
+                long available = next - 1;
+                while (published.get((int) (available + 1) & mask) == available + 1) {
+                    available++;
+                }
+                if (available < next) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                long s = next;
+                try {
+                    for (; s <= available; s++) {
+                        handler.onEvent(ring[(int) s & mask], s, s == available);
+                    }
+                } catch (Exception e) {
+                    System.err.println(getName() + " could not handle " + ring[(int) s & mask] + ", retrying in "
+                            + pause + " ms: " + e.getMessage());
+                    handler.onFailure(s, e);
+                    sequence.set(s - 1);
+                    next = s;
+                    LockSupport.parkNanos(pause * 1_000_000);
+                    pause = Math.min(pause * 2, MAX_RETRY_MILLIS);
+                    continue;
+                }
+                pause = INITIAL_RETRY_MILLIS;
+                sequence.set(available);
+                next = available + 1;
+            }
+        }
+    }
+}
\ No newline at end of file
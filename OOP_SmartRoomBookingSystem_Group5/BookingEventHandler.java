@@ -0,0 +1,11 @@
+// Consumer of a BookingEventBus. Events arrive in publication order on the consumer's own thread; endOfBatch is
+// true for the last event currently available, which is the moment to flush anything buffered.
+// An event whose onEvent throws is handed over again after a pause, until it succeeds; the consumer never moves
+// past it, so onEvent must be safe to repeat for an event it failed on.
+public interface BookingEventHandler {
+    void onEvent(BookingEvent event, long sequence, boolean endOfBatch) throws Exception;
+
+    // Called on the consumer's thread each time onEvent fails, before the event is retried.
+    default void onFailure(long sequence, Exception cause) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,384 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Bulk loader for the booking journal. The file is cut into line-aligned chunks that are parsed in parallel,
+// with branches, rooms and customers resolved through hash maps built once up front. The parsed records are
+// then applied to the BookingManager in file order in a single pass. Lines that cannot be used are reported
+// through getProblems() rather than silently dropped.
+// Branch schedules are applied before any booking, the last record of each branch winning, so bookings are
+// checked against the holidays and opening hours the branch had when it was last saved.
+public class BookingFileLoader {
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_PROBLEMS = 1000;
+
+    private final Map<String, User> users;
+    private final Map<String, Branch> branchesByName;
+    private final Map<Branch, Map<String, SmartRoom>> roomsByBranch;
+    private final ForkJoinPool pool;
+
+    private List<String> problems;
+    private int problemCount;
+    private int recordCount;
+    private int loadedCount;
+
+    public BookingFileLoader(Map<String, User> users, List<Branch> branches) {
+        this(users, branches, ForkJoinPool.commonPool());
+    }
+
+    public BookingFileLoader(Map<String, User> users, List<Branch> branches, ForkJoinPool pool) {
+        this.users = users;
+        this.pool = pool;
+        this.branchesByName = new HashMap<>();
+        this.roomsByBranch = new HashMap<>();
+        for (Branch branch : branches) {
+            branchesByName.put(branch.getName(), branch);
+            // Removed rooms are still known so their past bookings load; a room in use wins should an ID be reused.
+            Map<String, SmartRoom> rooms = new HashMap<>();
+            for (SmartRoom room : branch.getRemovedRooms()) {
+                rooms.put(room.getRoomId(), room);
+            }
+            for (SmartRoom room : branch.getRooms()) {
+                rooms.put(room.getRoomId(), room);
+            }
+            roomsByBranch.put(branch, rooms);
+        }
+    }
+
+    public void load(String fileName, long fromOffset, BookingManager bookingManager) throws IOException {
+        problems = new ArrayList<>();
+        problemCount = 0;
+        recordCount = 0;
+        loadedCount = 0;
+
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            return;
+        }
+        byte[] data;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = in.size() - fromOffset;
+            if (length <= 0) {
+                return;
+            }
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IOException("Bookings file is too large to load in one piece: " + fileName);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining() && in.read(buffer, fromOffset + buffer.position()) >= 0) {
+            }
+            data = buffer.array();
+        }
+
+        List<Chunk> chunks = pool.invoke(new ParseTask(data, 0, data.length, chunkSize(data.length)));
+        merge(chunks, bookingManager);
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    public int getProblemCount() {
+        return problemCount;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    private int chunkSize(int length) {
+        return Math.max(MIN_CHUNK_BYTES, length / (pool.getParallelism() * 4) + 1);
+    }
+
+    private void merge(List<Chunk> chunks, BookingManager bookingManager) {
+        Map<String, Record> creates = new LinkedHashMap<>();
+        List<Record> deletes = new ArrayList<>();
+        Map<Branch, Record> schedules = new HashMap<>();
+        int firstLine = 1;
+        for (Chunk chunk : chunks) {
+            for (Record record : chunk.records) {
+                record.line += firstLine;
+                recordCount++;
+                if (record.problem != null) {
+                    problem(record.line, record.problem);
+                    continue;
+                }
+                if (record.scheduleRecord) {
+                    if (record.branch != null) {
+                        schedules.put(record.branch, record);
+                    }
+                    continue;
+                }
+                if (record.delete) {
+                    if (creates.remove(record.bookingId) == null) {
+                        deletes.add(record);
+                    }
+                } else {
+                    Record first = creates.putIfAbsent(record.bookingId, record);
+                    if (first != null) {
+                        problem(record.line, "repeats booking " + record.bookingId + " from line " + first.line);
+                    }
+                }
+            }
+            firstLine += chunk.lineCount;
+        }
+
+        for (Record record : schedules.values()) {
+            record.branch.getSchedule().restore(record.operatingDays, record.startTime, record.endTime,
+                    record.holidays);
+        }
+        for (Record record : deletes) {
+            boolean removed = record.seriesRecord ? bookingManager.evictSeries(record.bookingId)
+                    : bookingManager.evictBooking(record.bookingId);
+            if (!removed) {
+                problem(record.line, "cancels unknown booking " + record.bookingId);
+            }
+        }
+        for (Record record : creates.values()) {
+            if (record.series != null) {
+                bookingManager.addSeriesFromFile(record.series);
+            } else if (!bookingManager.addBookingFromFile(record.bookingId, record.customer, record.branch,
+                    record.room, record.date, record.startTime, record.endTime, record.headcount)) {
+                problem(record.line, "overlaps another booking of " + record.room.getRoomId() + " on " + record.date);
+                continue;
+            }
+            loadedCount++;
+        }
+    }
+
+    private void problem(int line, String message) {
+        problemCount++;
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add("line " + line + ": " + message);
+        }
+    }
+
+    private Record parseLine(String line, int lineIndex) {
+        Record record = new Record(lineIndex);
+        String[] fields = BookingJournal.parseRecord(line);
+        if (fields == null) {
+            record.problem = "malformed record";
+            return record;
+        }
+        if (fields[0].equals(BookingJournal.SCHEDULE)) {
+            return parseSchedule(fields, record);
+        }
+        record.bookingId = fields[1];
+        record.seriesRecord = fields[0].equals(BookingJournal.SERIES) || fields[0].equals(BookingJournal.CANCEL_SERIES);
+        if (fields[0].equals(BookingJournal.DELETE) || fields[0].equals(BookingJournal.CANCEL_SERIES)) {
+            record.delete = true;
+            return record;
+        }
+
+        User user = users.get(fields[2]);
+        if (!(user instanceof Customer)) {
+            record.problem = "unknown customer " + fields[2];
+            return record;
+        }
+        Branch branch = branchesByName.get(fields[3]);
+        if (branch == null) {
+            record.problem = "unknown branch " + fields[3];
+            return record;
+        }
+        SmartRoom room = roomsByBranch.get(branch).get(fields[4]);
+        if (room == null) {
+            record.problem = "unknown room " + fields[4] + " in " + fields[3];
+            return record;
+        }
+        try {
+            if (record.seriesRecord) {
+                record.series = parseSeries(fields, (Customer) user, branch, room);
+                return record;
+            }
+            record.date = parseDate(fields[5]);
+            record.startTime = parseTime(fields[6]);
+            record.endTime = fields[7] == null ? RoomSchedule.defaultEndTime(record.startTime) : parseTime(fields[7]);
+            if (!RoomSchedule.isValidRange(record.startTime, record.endTime)) {
+                record.problem = "ends before it starts";
+                return record;
+            }
+            record.headcount = fields[8] == null ? 0 : digits(fields[8], 0, fields[8].length());
+        } catch (DateTimeException | NumberFormatException e) {
+            record.problem = "bad date or time";
+            return record;
+        } catch (IllegalArgumentException e) {
+            record.problem = e.getMessage();
+            return record;
+        }
+        record.customer = (Customer) user;
+        record.branch = branch;
+        record.room = room;
+        return record;
+    }
+
+    // A branch removed since leaves its schedule records behind until the journal is compacted; they are ignored.
+    private Record parseSchedule(String[] fields, Record record) {
+        record.scheduleRecord = true;
+        record.branch = branchesByName.get(fields[1]);
+        try {
+            record.operatingDays = EnumSet.noneOf(DayOfWeek.class);
+            if (!fields[2].isEmpty()) {
+                for (String day : fields[2].split(",")) {
+                    record.operatingDays.add(DayOfWeek.valueOf(day));
+                }
+            }
+            record.startTime = parseTime(fields[3]);
+            record.endTime = parseTime(fields[4]);
+            record.holidays = new TreeSet<>();
+            if (!fields[5].isEmpty()) {
+                for (String date : fields[5].split(",")) {
+                    record.holidays.add(parseDate(date));
+                }
+            }
+        } catch (DateTimeException | IllegalArgumentException e) {
+            record.problem = "bad schedule for " + fields[1];
+        }
+        return record;
+    }
+
+    private static RecurringBooking parseSeries(String[] fields, Customer customer, Branch branch, SmartRoom room) {
+        Set<LocalDate> skipped = new TreeSet<>();
+        if (!fields[10].isEmpty()) {
+            for (String date : fields[10].split(",")) {
+                skipped.add(parseDate(date));
+            }
+        }
+        return new RecurringBooking(fields[1], customer, branch, room, RecurringBooking.Pattern.fromString(fields[5]),
+                parseDate(fields[6]), parseDate(fields[7]), parseTime(fields[8]), parseTime(fields[9]), skipped);
+    }
+
+    // The journal always writes ISO dates and HH:mm times, so the common case skips the general parsers.
+    private static LocalDate parseDate(String s) {
+        if (s.length() == 10 && s.charAt(4) == '-' && s.charAt(7) == '-') {
+            return LocalDate.of(digits(s, 0, 4), digits(s, 5, 7), digits(s, 8, 10));
+        }
+        return LocalDate.parse(s);
+    }
+
+    private static LocalTime parseTime(String s) {
+        if (s.length() == 5 && s.charAt(2) == ':') {
+            return LocalTime.of(digits(s, 0, 2), digits(s, 3, 5));
+        }
+        return LocalTime.parse(s);
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(s);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static class Record {
+        int line;
+        String problem;
+        boolean delete;
+        boolean seriesRecord;
+        boolean scheduleRecord;
+        String bookingId;
+        RecurringBooking series;
+        Customer customer;
+        Branch branch;
+        SmartRoom room;
+        LocalDate date;
+        // Opening and closing times for schedule records.
+        LocalTime startTime;
+        LocalTime endTime;
+        int headcount;
+        Set<DayOfWeek> operatingDays;
+        Set<LocalDate> holidays;
+
+        Record(int line) {
+            this.line = line;
+        }
+    }
+
+    // Records of one chunk; their line numbers are relative to the chunk until merge() shifts them.
+    private static class Chunk {
+        final List<Record> records = new ArrayList<>();
+        int lineCount;
+    }
+
+    private class ParseTask extends RecursiveTask<List<Chunk>> {
+        private static final long serialVersionUID = 1L;
+        private final byte[] data;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ParseTask(byte[] data, int from, int to, int chunkSize) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (to - from > chunkSize) {
+                int middle = from + (to - from) / 2;
+                while (middle < to && data[middle - 1] != '\n') {
+                    middle++;
+                }
+                if (middle < to) {
+                    ParseTask left = new ParseTask(data, from, middle, chunkSize);
+                    ParseTask right = new ParseTask(data, middle, to, chunkSize);
+                    left.fork();
+                    List<Chunk> result = new ArrayList<>(right.compute());
+                    result.addAll(0, left.join());
+                    return result;
+                }
+            }
+            List<Chunk> result = new ArrayList<>(1);
+            result.add(parseChunk());
+            return result;
+        }
+
+        private Chunk parseChunk() {
+            Chunk chunk = new Chunk();
+            int lineStart = from;
+            while (lineStart < to) {
+                int lineEnd = lineStart;
+                while (lineEnd < to && data[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd > lineStart && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                if (contentEnd > lineStart) {
+                    String line = new String(data, lineStart, contentEnd - lineStart, StandardCharsets.UTF_8);
+                    chunk.records.add(parseLine(line, chunk.lineCount));
+                }
+                chunk.lineCount++;
+                lineStart = lineEnd + 1;
+            }
+            return chunk;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,547 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// JSON-over-HTTP front end to the same in-memory managers the console menu uses.
+//
+//   POST   /api/sessions            (userId, name, password) returns a session token
+//   DELETE /api/sessions            ends the session
+//   GET    /api/availability?branch=..&type=..&date=yyyy-MM-dd&start=HH:mm[&end=HH:mm]
+//   POST   /api/bookings            (form or query parameters: branch, roomId, date, start[, end][, people]),
+//                                    or without roomId: people, date, start[, end][, branch][, type] books the
+//                                    smallest free room that seats everyone, in any branch unless one is given
+//   DELETE /api/bookings/{bookingId}
+//   POST   /api/series              (branch, roomId, pattern=WEEKLY|WEEKDAYS, date, start[, end],
+//                                    and weeks=N for WEEKLY or until=yyyy-MM-dd)
+//   DELETE /api/series/{seriesId}
+//   GET    /api/users/{userId}/bookings
+//   GET    /api/next-available?type=..&duration=minutes&from=yyyy-MM-dd&to=yyyy-MM-dd[&minCapacity=..][&branch=..][&limit=..]
+//   GET    /api/stats/availability-cache
+//   GET    /api/reports/occupancy?from=yyyy-MM-dd&to=yyyy-MM-dd&by=branch|room|type|weekday|hour[&format=csv]
+//                                   (admins only; format=csv&detail=true gives one line per room, date and hour)
+//
+// Requests run one per virtual thread when the JVM has them, falling back to a fixed pool with a bounded queue
+// otherwise; requests the pool has no room to queue are turned away with 503 straight away. At most maxConcurrent
+// requests are handled at once, and a request that cannot get a slot within maxWaitMillis of arriving (time spent
+// queued for a pool thread included) is turned away with 503 too, so queueing delay stays bounded under overload.
+//
+// Bookings and cancellations are acknowledged only once they are on disk; if that takes longer than
+// DURABLE_WAIT_MILLIS the request fails with 500 although the change stays in effect.
+//
+// Booking, series and per-user requests need an "Authorization: Bearer <token>" header; they act for the customer
+// the token was issued to and only see or cancel that customer's bookings.
+public class BookingHttpServer {
+    private static final int BACKLOG = 4096;
+    private static final int FALLBACK_THREADS = 256;
+    private static final int FALLBACK_QUEUE = 1024;
+    private static final int DEFAULT_SLOT_RESULTS = 10;
+    private static final long LOGIN_WAIT_SECONDS = 30;
+    private static final long DURABLE_WAIT_MILLIS = 10_000;
+    private static final String BEARER = "Bearer ";
+    // When the request being handled was handed to the executor, as System.nanoTime().
+    private static final ThreadLocal<Long> ARRIVED = new ThreadLocal<>();
+
+    private final BookingService bookingService;
+    private final List<Branch> branches;
+    private final Authenticator authenticator;
+    private final Semaphore permits;
+    private final long maxWaitMillis;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Answers the requests the executor rejects, with 503 and nothing else, so it keeps up however many arrive.
+    private final ExecutorService busyExecutor;
+
+    public BookingHttpServer(int port, BookingService bookingService, List<Branch> branches,
+            Authenticator authenticator, int maxConcurrent, long maxWaitMillis) throws IOException {
+        this.bookingService = bookingService;
+        this.branches = branches;
+        this.authenticator = authenticator;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxWaitMillis = maxWaitMillis;
+        this.executor = newRequestExecutor();
+        this.busyExecutor = Executors.newSingleThreadExecutor(BusyThread::new);
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(this::dispatch);
+        server.createContext("/api/sessions", limited(this::sessions));
+        server.createContext("/api/availability", limited(this::availability));
+        server.createContext("/api/bookings", limited(this::bookings));
+        server.createContext("/api/series", limited(this::series));
+        server.createContext("/api/users/", limited(this::userBookings));
+        server.createContext("/api/next-available", limited(this::nextAvailable));
+        server.createContext("/api/stats/availability-cache", limited(this::cacheStats));
+        server.createContext("/api/reports/occupancy", limited(this::occupancy));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        busyExecutor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Virtual threads arrived after the JDK this project targets, so they are looked up reflectively.
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return new ThreadPoolExecutor(FALLBACK_THREADS, FALLBACK_THREADS, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(FALLBACK_QUEUE));
+        }
+    }
+
+    private void dispatch(Runnable request) {
+        long arrived = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                ARRIVED.set(arrived);
+                try {
+                    request.run();
+                } finally {
+                    ARRIVED.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            busyExecutor.execute(request);
+        }
+    }
+
+    private HttpHandler limited(HttpHandler handler) {
+        return exchange -> {
+            boolean acquired = false;
+            try {
+                Long arrived = ARRIVED.get();
+                long waitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)
+                        - (arrived == null ? 0 : System.nanoTime() - arrived);
+                acquired = !(Thread.currentThread() instanceof BusyThread)
+                        && permits.tryAcquire(Math.max(waitNanos, 0), TimeUnit.NANOSECONDS);
+                if (!acquired) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, error("Server is busy, please retry."));
+                    return;
+                }
+                handler.handle(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, error("Server is shutting down."));
+            } catch (SecurityException e) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                send(exchange, 401, error(e.getMessage()));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                send(exchange, 400, error(e.getMessage()));
+            } catch (IllegalStateException e) {
+                send(exchange, 409, error(e.getMessage()));
+            } catch (UncheckedIOException e) {
+                send(exchange, 500, error(e.getMessage()));
+            } finally {
+                if (acquired) {
+                    permits.release();
+                }
+                exchange.close();
+            }
+        };
+    }
+
+    private void sessions(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST")) {
+            Map<String, String> params = parameters(exchange);
+            String token;
+            try {
+                token = authenticator.login(required(params, "userId"), required(params, "name"),
+                        required(params, "password")).get(LOGIN_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                if (e instanceof TimeoutException || e.getCause() instanceof RejectedExecutionException) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, error("Too many logins in progress, please retry."));
+                } else {
+                    send(exchange, 500, error(e.getCause().getMessage()));
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, error("Server is shutting down."));
+                return;
+            }
+            User user = authenticator.authorize(token);
+            if (user == null) {
+                throw new SecurityException("Invalid credentials.");
+            }
+            send(exchange, 201, "{\"token\":" + quote(token) + ",\"userId\":" + quote(user.getUserId()) + "}");
+        } else if (method.equals("DELETE")) {
+            authenticator.logout(token(exchange));
+            send(exchange, 200, "{\"loggedOut\":true}");
+        } else {
+            send(exchange, 405, error("Use POST or DELETE /api/sessions."));
+        }
+    }
+
+    private void availability(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Use GET."));
+            return;
+        }
+        Map<String, String> params = parameters(exchange);
+        Branch branch = branch(required(params, "branch"));
+        String type = required(params, "type");
+        LocalDate date = LocalDate.parse(required(params, "date"));
+        LocalTime start = LocalTime.parse(required(params, "start"));
+        LocalTime end = params.containsKey("end") ? LocalTime.parse(params.get("end")) : RoomSchedule.defaultEndTime(start);
+
+        List<SmartRoom> rooms = bookingService.findAvailableRooms(branch, type, date, start, end);
+        StringBuilder json = new StringBuilder("{\"branch\":").append(quote(branch.getName()))
+                .append(",\"type\":").append(quote(type))
+                .append(",\"date\":").append(quote(date.toString()))
+                .append(",\"start\":").append(quote(start.toString()))
+                .append(",\"end\":").append(quote(end.toString()))
+                .append(",\"count\":").append(rooms.size())
+                .append(",\"rooms\":[");
+        for (int i = 0; i < rooms.size(); i++) {
+            SmartRoom room = rooms.get(i);
+            json.append(i > 0 ? "," : "").append("{\"roomId\":").append(quote(room.getRoomId()))
+                    .append(",\"type\":").append(quote(room.getType()))
+                    .append(",\"capacity\":").append(room.getCapacity()).append('}');
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+
+    private void nextAvailable(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Use GET."));
+            return;
+        }
+        Map<String, String> params = parameters(exchange);
+        List<Branch> searched = params.containsKey("branch") ? List.of(branch(params.get("branch"))) : branches;
+        int minCapacity = params.containsKey("minCapacity") ? Integer.parseInt(params.get("minCapacity")) : 0;
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : DEFAULT_SLOT_RESULTS;
+        List<SlotFinder.Candidate> candidates = bookingService.findNextAvailableSlots(searched, required(params, "type"),
+                minCapacity, Integer.parseInt(required(params, "duration")), LocalDate.parse(required(params, "from")),
+                LocalDate.parse(required(params, "to")), limit);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < candidates.size(); i++) {
+            SlotFinder.Candidate candidate = candidates.get(i);
+            json.append(i > 0 ? "," : "").append("{\"branch\":").append(quote(candidate.branch.getName()))
+                    .append(",\"roomId\":").append(quote(candidate.room.getRoomId()))
+                    .append(",\"capacity\":").append(candidate.room.getCapacity())
+                    .append(",\"date\":").append(quote(candidate.date.toString()))
+                    .append(",\"start\":").append(quote(candidate.getStartTime().toString()))
+                    .append(",\"end\":").append(quote(candidate.getEndTime().toString())).append('}');
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private void bookings(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST") && (path.equals("/api/bookings") || path.equals("/api/bookings/"))) {
+            Customer customer = customer(exchange);
+            Map<String, String> params = parameters(exchange);
+            LocalDate date = LocalDate.parse(required(params, "date"));
+            LocalTime start = LocalTime.parse(required(params, "start"));
+            LocalTime end = params.containsKey("end") ? LocalTime.parse(params.get("end")) : RoomSchedule.defaultEndTime(start);
+            Booking booking;
+            if (params.containsKey("roomId")) {
+                Branch branch = branch(required(params, "branch"));
+                SmartRoom room = room(branch, params);
+                int headcount = params.containsKey("people") ? Integer.parseInt(params.get("people")) : 0;
+                booking = bookingService.createBooking(new BookingRequest(customer, branch, room, date, start, end,
+                        headcount));
+            } else {
+                int headcount = Integer.parseInt(required(params, "people"));
+                List<Branch> searched = params.containsKey("branch") ? List.of(branch(params.get("branch"))) : branches;
+                booking = bookingService.allocateRoom(customer, searched, params.get("type"), headcount, date, start, end);
+                if (booking == null) {
+                    send(exchange, 409, error("No free room seats " + headcount + " people at that time."));
+                    return;
+                }
+            }
+            bookingService.awaitDurable(DURABLE_WAIT_MILLIS);
+            send(exchange, 201, toJson(booking));
+        } else if (method.equals("DELETE") && path.startsWith("/api/bookings/")) {
+            Customer customer = customer(exchange);
+            String bookingId = path.substring("/api/bookings/".length());
+            Booking booking = bookingService.getBookingManager().getBookingById(bookingId);
+            if (booking != null && booking.getCustomer().getUserId().equals(customer.getUserId())
+                    && bookingService.cancelBooking(bookingId)) {
+                bookingService.awaitDurable(DURABLE_WAIT_MILLIS);
+                send(exchange, 200, "{\"cancelled\":" + quote(bookingId) + "}");
+            } else {
+                send(exchange, 404, error("Booking not found: " + bookingId));
+            }
+        } else {
+            send(exchange, 405, error("Use POST /api/bookings or DELETE /api/bookings/{id}."));
+        }
+    }
+
+    private void series(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST") && (path.equals("/api/series") || path.equals("/api/series/"))) {
+            Customer customer = customer(exchange);
+            Map<String, String> params = parameters(exchange);
+            Branch branch = branch(required(params, "branch"));
+            SmartRoom room = room(branch, params);
+            RecurringBooking.Pattern pattern = RecurringBooking.Pattern.fromString(required(params, "pattern"));
+            LocalDate date = LocalDate.parse(required(params, "date"));
+            LocalDate lastDate = params.containsKey("until") ? LocalDate.parse(params.get("until"))
+                    : RecurringBooking.lastDateForWeeks(date, Integer.parseInt(required(params, "weeks")));
+            LocalTime start = LocalTime.parse(required(params, "start"));
+            LocalTime end = params.containsKey("end") ? LocalTime.parse(params.get("end")) : RoomSchedule.defaultEndTime(start);
+            RecurringBooking recurring = bookingService.createSeries(customer, branch, room, pattern, date, lastDate, start, end);
+            bookingService.awaitDurable(DURABLE_WAIT_MILLIS);
+            StringBuilder dates = new StringBuilder("[");
+            for (LocalDate occurrence : recurring.getOccurrences()) {
+                dates.append(dates.length() > 1 ? "," : "").append(quote(occurrence.toString()));
+            }
+            send(exchange, 201, "{\"seriesId\":" + quote(recurring.getSeriesId())
+                    + ",\"roomId\":" + quote(room.getRoomId())
+                    + ",\"start\":" + quote(start.toString())
+                    + ",\"end\":" + quote(end.toString())
+                    + ",\"occurrences\":" + dates.append(']')
+                    + ",\"skipped\":" + recurring.getSkippedDates().size() + "}");
+        } else if (method.equals("DELETE") && path.startsWith("/api/series/")) {
+            Customer customer = customer(exchange);
+            String seriesId = path.substring("/api/series/".length());
+            RecurringBooking recurring = bookingService.getBookingManager().getSeriesById(seriesId);
+            if (recurring != null && recurring.getCustomer().getUserId().equals(customer.getUserId())
+                    && bookingService.cancelSeries(seriesId)) {
+                bookingService.awaitDurable(DURABLE_WAIT_MILLIS);
+                send(exchange, 200, "{\"cancelled\":" + quote(seriesId) + "}");
+            } else {
+                send(exchange, 404, error("Series not found: " + seriesId));
+            }
+        } else {
+            send(exchange, 405, error("Use POST /api/series or DELETE /api/series/{id}."));
+        }
+    }
+
+    private void userBookings(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.split("/");
+        if (!exchange.getRequestMethod().equals("GET") || parts.length != 5 || !parts[4].equals("bookings")) {
+            send(exchange, 404, error("Use GET /api/users/{userId}/bookings."));
+            return;
+        }
+        User user = user(exchange);
+        if (!(user instanceof Admin) && !user.getUserId().equals(parts[3])) {
+            send(exchange, 403, error("Bookings of other users are not visible to you."));
+            return;
+        }
+        List<Booking> userBookings = bookingService.getBookingsForUser(parts[3]);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < userBookings.size(); i++) {
+            json.append(i > 0 ? "," : "").append(toJson(userBookings.get(i)));
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private void cacheStats(HttpExchange exchange) throws IOException {
+        AvailabilityCache cache = bookingService.getAvailabilityCache();
+        send(exchange, 200, String.format(Locale.ROOT,
+                "{\"size\":%d,\"hits\":%d,\"misses\":%d,\"invalidations\":%d,\"expirations\":%d,\"evictions\":%d,\"hitRatio\":%.4f}",
+                cache.size(), cache.getHits(), cache.getMisses(), cache.getInvalidations(), cache.getExpirations(),
+                cache.getEvictions(), cache.getHitRatio()));
+    }
+
+    private void occupancy(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Use GET."));
+            return;
+        }
+        if (!(user(exchange) instanceof Admin)) {
+            send(exchange, 403, error("Occupancy reports are for admins."));
+            return;
+        }
+        Map<String, String> params = parameters(exchange);
+        LocalDate from = LocalDate.parse(required(params, "from"));
+        LocalDate to = LocalDate.parse(required(params, "to"));
+        boolean csv = "csv".equalsIgnoreCase(params.get("format"));
+        StringWriter out = new StringWriter();
+        if (csv && "true".equalsIgnoreCase(params.get("detail"))) {
+            OccupancyReport.writeDetailCsv(branches, from, to, out);
+            send(exchange, 200, out.toString(), "text/csv; charset=utf-8");
+            return;
+        }
+        OccupancyReport.Dimension by = OccupancyReport.Dimension.fromString(params.getOrDefault("by", "branch"));
+        List<OccupancyReport.Row> rows = OccupancyReport.summarize(branches, from, to, by);
+        if (csv) {
+            OccupancyReport.writeCsv(rows, by, out);
+            send(exchange, 200, out.toString(), "text/csv; charset=utf-8");
+            return;
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < rows.size(); i++) {
+            OccupancyReport.Row row = rows.get(i);
+            json.append(i > 0 ? "," : "").append("{\"key\":").append(quote(row.key))
+                    .append(",\"bookedMinutes\":").append(row.bookedMinutes)
+                    .append(",\"openMinutes\":").append(row.openMinutes)
+                    .append(",\"utilization\":").append(String.format(Locale.ROOT, "%.4f", row.getUtilization()))
+                    .append('}');
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private User user(HttpExchange exchange) {
+        User user = authenticator.authorize(token(exchange));
+        if (user == null) {
+            throw new SecurityException("Log in via POST /api/sessions and send the token as a Bearer header.");
+        }
+        return user;
+    }
+
+    private Customer customer(HttpExchange exchange) {
+        User user = user(exchange);
+        if (!(user instanceof Customer)) {
+            throw new IllegalArgumentException("Only customers can make or cancel bookings.");
+        }
+        return (Customer) user;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith(BEARER) ? header.substring(BEARER.length()).trim() : null;
+    }
+
+    private static SmartRoom room(Branch branch, Map<String, String> params) {
+        SmartRoom room = branch.getRoomById(required(params, "roomId"));
+        if (room == null) {
+            throw new IllegalArgumentException("Unknown room: " + params.get("roomId"));
+        }
+        return room;
+    }
+
+    private Branch branch(String name) {
+        for (Branch branch : branches) {
+            if (branch.getName().equals(name)) {
+                return branch;
+            }
+        }
+        throw new IllegalArgumentException("Unknown branch: " + name);
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    // Query string parameters, plus form-encoded body parameters for POST requests.
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        addParameters(params, exchange.getRequestURI().getRawQuery());
+        if (exchange.getRequestMethod().equals("POST")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                addParameters(params, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void addParameters(Map<String, String> params, String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    static String toJson(Booking booking) {
+        return "{\"bookingId\":" + quote(booking.getBookingId())
+                + ",\"customerId\":" + quote(booking.getCustomer().getUserId())
+                + ",\"branch\":" + quote(booking.getBranch().getName())
+                + ",\"roomId\":" + quote(booking.getRoom().getRoomId())
+                + ",\"date\":" + quote(booking.getDate().toString())
+                + ",\"start\":" + quote(booking.getTime().toString())
+                + ",\"end\":" + quote(booking.getEndTime().toString()) + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message == null ? "" : message) + "}";
+    }
+
+    static String quote(String s) {
+        StringBuilder out = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, body, "application/json; charset=utf-8");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body, String contentType) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class BusyThread extends Thread {
+        BusyThread(Runnable task) {
+            super(task, "http-busy");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// What removing a room or a branch, or closing a branch on some dates, does to existing bookings: the bookings that
+// would lose their room or fall on a closed day, and the series that meet there. BookingManager finds them through
+// its room and date indexes, so the cost grows with the number of bookings affected rather than with all bookings,
+// and BookingManager.cascade cancels or relocates them in one batch.
+public class BookingImpact {
+    public enum Action {
+        CANCEL, RELOCATE
+    }
+
+    private final Branch branch;
+    private final SmartRoom room;
+    private final Set<LocalDate> dates;
+    private final List<Booking> bookings;
+    private final List<RecurringBooking> series;
+
+    BookingImpact(Branch branch, SmartRoom room, Set<LocalDate> dates, List<Booking> bookings,
+            List<RecurringBooking> series) {
+        this.branch = branch;
+        this.room = room;
+        this.dates = Collections.unmodifiableSet(new TreeSet<>(dates));
+        this.bookings = Collections.unmodifiableList(bookings);
+        this.series = Collections.unmodifiableList(series);
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    // The room being removed, or null when the change concerns the whole branch.
+    public SmartRoom getRoom() {
+        return room;
+    }
+
+    // The dates the branch closes on; empty when a room or the branch is removed outright. Series then lose only
+    // these occurrences instead of being cancelled.
+    public Set<LocalDate> getDates() {
+        return dates;
+    }
+
+    public List<Booking> getBookings() {
+        return bookings;
+    }
+
+    public List<RecurringBooking> getSeries() {
+        return series;
+    }
+
+    public boolean isEmpty() {
+        return bookings.isEmpty() && series.isEmpty();
+    }
+
+    public void display() {
+        System.out.println(bookings.size() + " booking(s) and " + series.size() + " recurring booking(s) affected:");
+        for (Booking booking : bookings) {
+            booking.display();
+        }
+        for (RecurringBooking recurring : series) {
+            recurring.display();
+        }
+    }
+
+    // What cascade did to each affected booking.
+    public static class Outcome {
+        private final List<Booking> cancelled = new ArrayList<>();
+        private final Map<Booking, Booking> relocated = new LinkedHashMap<>();
+        private final List<RecurringBooking> cancelledSeries = new ArrayList<>();
+        private final List<RecurringBooking> trimmedSeries = new ArrayList<>();
+
+        public List<Booking> getCancelled() {
+            return cancelled;
+        }
+
+        // Each moved booking mapped to the booking that replaces it.
+        public Map<Booking, Booking> getRelocated() {
+            return relocated;
+        }
+
+        public List<RecurringBooking> getCancelledSeries() {
+            return cancelledSeries;
+        }
+
+        // Series that still run, without the closed dates.
+        public List<RecurringBooking> getTrimmedSeries() {
+            return trimmedSeries;
+        }
+
+        public void display() {
+            for (Map.Entry<Booking, Booking> entry : relocated.entrySet()) {
+                Booking moved = entry.getValue();
+                System.out.println("Moved " + entry.getKey().getBookingId() + " to " + moved.getBranch().getName() + " "
+                        + moved.getRoom().getRoomId() + " as " + moved.getBookingId());
+            }
+            for (Booking booking : cancelled) {
+                System.out.println("Cancelled " + booking.getBookingId());
+            }
+            for (RecurringBooking recurring : cancelledSeries) {
+                System.out.println("Cancelled series " + recurring.getSeriesId());
+            }
+            for (RecurringBooking recurring : trimmedSeries) {
+                System.out.println("Series " + recurring.getSeriesId() + " now skips " + recurring.getSkippedDates());
+            }
+        }
+
+        void cancelled(Booking booking) {
+            cancelled.add(booking);
+        }
+
+        void relocated(Booking from, Booking to) {
+            relocated.put(from, to);
+        }
+
+        void cancelledSeries(RecurringBooking recurring) {
+            cancelledSeries.add(recurring);
+        }
+
+        void trimmedSeries(RecurringBooking recurring) {
+            trimmedSeries.add(recurring);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,351 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+public class BookingJournal {
+    public static final String CREATE = "C";
+    public static final String DELETE = "D";
+    public static final String SERIES = "S";
+    public static final String CANCEL_SERIES = "X";
+    // A branch's whole schedule; the last one in the file wins.
+    public static final String SCHEDULE = "H";
+    // Fields are separated by SEPARATOR. A separator, line break or backslash inside a field (branch names and room
+    // IDs are typed in by admins) is escaped with a backslash, so every record stays one line of fixed fields.
+    private static final char SEPARATOR = '|';
+    private static final char ESCAPE = '\\';
+    private static final int FINGERPRINT_BYTES = 4096;
+
+    private final Path path;
+    private final boolean fsync;
+    private FileChannel channel;
+    // Length the file must be cut back to before anything else is appended, after an append failed partway and
+    // could not cut off what it had written; -1 when the file ends after a whole record.
+    private long truncateTo = -1;
+
+    public BookingJournal(String fileName, boolean fsync) {
+        this.path = Paths.get(fileName);
+        this.fsync = fsync;
+    }
+
+    public synchronized void appendCreate(Booking booking) throws IOException {
+        append(formatCreate(booking));
+    }
+
+    // Writes all records with one append (and at most one fsync).
+    public synchronized void appendCreates(List<Booking> bookings) throws IOException {
+        List<String> records = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            records.add(formatCreate(booking));
+        }
+        appendRecords(records);
+    }
+
+    // Writes already formatted records with one append (and at most one fsync).
+    public synchronized void appendRecords(List<String> records) throws IOException {
+        if (!records.isEmpty()) {
+            append(String.join("\n", records));
+        }
+    }
+
+    public synchronized void appendDelete(String bookingId) throws IOException {
+        append(formatDelete(bookingId));
+    }
+
+    public synchronized void appendSeries(RecurringBooking recurring) throws IOException {
+        append(formatSeries(recurring));
+    }
+
+    public synchronized void appendSeriesCancel(String seriesId) throws IOException {
+        append(formatSeriesCancel(seriesId));
+    }
+
+    // A failed append leaves the file as it was, so retrying it neither repeats records nor leaves a torn line
+    // in front of them.
+    private void append(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        FileChannel out = openChannel();
+        long start = out.size();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            if (fsync) {
+                out.force(false);
+            }
+        } catch (IOException e) {
+            cutBack(out, start);
+            throw e;
+        }
+    }
+
+    private void cutBack(FileChannel out, long length) {
+        try {
+            out.truncate(length);
+        } catch (IOException e) {
+            truncateTo = length;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    // Forces records appended since the last force to disk.
+    public synchronized void force() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (truncateTo >= 0) {
+                try {
+                    opened.truncate(truncateTo);
+                } catch (IOException e) {
+                    opened.close();
+                    throw e;
+                }
+                truncateTo = -1;
+            }
+            channel = opened;
+        }
+        return channel;
+    }
+
+    // Returns every record in file order, each normalised to {type, id, customer, branch, room, date, time, end,
+    // headcount} for creates, {type, id, customer, branch, room, pattern, first, last, start, end, skipped} for series and
+    // {type, id} for deletes and series cancellations and {type, branch, days, opening, closing, holidays} for
+    // schedules. The end time and headcount are null for records written before bookings had them.
+    // Lines that cannot be parsed are skipped.
+    public synchronized List<String[]> readRecords() throws IOException {
+        return readRecords(0);
+    }
+
+    // Same as readRecords(), starting at a byte offset that must fall on a line boundary.
+    public synchronized List<String[]> readRecords(long fromOffset) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+             BufferedReader br = new BufferedReader(Channels.newReader(in.position(fromOffset), StandardCharsets.UTF_8.newDecoder(), -1))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] record = parseRecord(line);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    // Writes only the branch schedules and the live bookings and series to a temporary file and atomically replaces
+    // the journal with it.
+    // They are read while the journal is locked, so nothing appended in the meantime can be lost by the swap. The
+    // caller must also keep them from changing until every record up to now has been appended (see
+    // BookingManager.runExclusive), or a record appended after the swap repeats or contradicts the live set.
+    public synchronized void compact(Supplier<? extends Collection<Branch>> branches,
+            Supplier<? extends Collection<Booking>> liveBookings,
+            Supplier<? extends Collection<RecurringBooking>> liveSeries) throws IOException {
+        close();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter bw = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))) {
+            for (Branch branch : branches.get()) {
+                bw.write(formatSchedule(branch));
+                bw.newLine();
+            }
+            for (Booking booking : liveBookings.get()) {
+                bw.write(formatCreate(booking));
+                bw.newLine();
+            }
+            for (RecurringBooking recurring : liveSeries.get()) {
+                bw.write(formatSeries(recurring));
+                bw.newLine();
+            }
+            bw.flush();
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        truncateTo = -1;
+    }
+
+    public synchronized long size() throws IOException {
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    // CRC of the bytes just before the offset. A snapshot records it so that a journal which has since been
+    // compacted or replaced is not mistaken for the one the snapshot was taken against.
+    public synchronized long fingerprint(long offset) throws IOException {
+        CRC32 crc = new CRC32();
+        if (offset > 0 && Files.exists(path) && Files.size(path) >= offset) {
+            int length = (int) Math.min(offset, FINGERPRINT_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (buffer.hasRemaining() && in.read(buffer, offset - length + buffer.position()) >= 0) {
+                }
+            }
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public static String formatCreate(Booking booking) {
+        return join(CREATE, booking.getBookingId(), booking.getCustomer().getUserId(), booking.getBranch().getName(),
+                booking.getRoom().getRoomId(), booking.getDate(), booking.getTime(), booking.getEndTime(),
+                booking.getHeadcount());
+    }
+
+    public static String formatDelete(String bookingId) {
+        return join(DELETE, bookingId);
+    }
+
+    public static String formatSeriesCancel(String seriesId) {
+        return join(CANCEL_SERIES, seriesId);
+    }
+
+    // Skipped dates are written comma-separated in the last field, which is empty when nothing was skipped.
+    public static String formatSeries(RecurringBooking recurring) {
+        StringJoiner skipped = new StringJoiner(",");
+        for (LocalDate date : recurring.getSkippedDates()) {
+            skipped.add(date.toString());
+        }
+        return join(SERIES, recurring.getSeriesId(), recurring.getCustomer().getUserId(),
+                recurring.getBranch().getName(), recurring.getRoom().getRoomId(), recurring.getPattern(),
+                recurring.getFirstDate(), recurring.getLastDate(), recurring.getStartTime(), recurring.getEndTime(),
+                skipped);
+    }
+
+    // Operating days and holidays are written comma-separated, in order; the holidays field is empty when there
+    // are none.
+    public static String formatSchedule(Branch branch) {
+        BranchSchedule schedule = branch.getSchedule();
+        StringJoiner days = new StringJoiner(",");
+        for (DayOfWeek day : new TreeSet<>(schedule.getOperatingDays())) {
+            days.add(day.toString());
+        }
+        StringJoiner holidays = new StringJoiner(",");
+        for (LocalDate date : new TreeSet<>(schedule.getHolidays())) {
+            holidays.add(date.toString());
+        }
+        return join(SCHEDULE, branch.getName(), days, schedule.getOpeningTime(), schedule.getClosingTime(), holidays);
+    }
+
+    public static String[] parseRecord(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        if (line.startsWith(CREATE + SEPARATOR)) {
+            String[] parts = split(line);
+            return parts.length >= 7 && parts.length <= 9 ? Arrays.copyOf(parts, 9) : null;
+        }
+        if (line.startsWith(SERIES + SEPARATOR)) {
+            String[] parts = split(line);
+            return parts.length == 11 ? parts : null;
+        }
+        if (line.startsWith(SCHEDULE + SEPARATOR)) {
+            String[] parts = split(line);
+            return parts.length == 6 ? parts : null;
+        }
+        if (line.startsWith(DELETE + SEPARATOR) || line.startsWith(CANCEL_SERIES + SEPARATOR)) {
+            String[] parts = split(line);
+            return parts.length == 2 ? parts : null;
+        }
+        return parseLegacyRecord(line);
+    }
+
+    private static String join(Object... fields) {
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                record.append(SEPARATOR);
+            }
+            String field = String.valueOf(fields[i]);
+            for (int j = 0; j < field.length(); j++) {
+                char c = field.charAt(j);
+                if (c == '\n') {
+                    record.append(ESCAPE).append('n');
+                } else if (c == '\r') {
+                    record.append(ESCAPE).append('r');
+                } else {
+                    if (c == SEPARATOR || c == ESCAPE) {
+                        record.append(ESCAPE);
+                    }
+                    record.append(c);
+                }
+            }
+        }
+        return record.toString();
+    }
+
+    // A backslash before anything but an escaped character is kept as it is, so records written before fields
+    // were escaped still read back the same.
+    private static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            char next = i + 1 < line.length() ? line.charAt(i + 1) : 0;
+            if (c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == ESCAPE && (next == SEPARATOR || next == ESCAPE)) {
+                field.append(next);
+                i++;
+            } else if (c == ESCAPE && (next == 'n' || next == 'r')) {
+                field.append(next == 'n' ? '\n' : '\r');
+                i++;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // Old bookings.txt lines are "id,customer,branch,room,date,time". Branch names may contain commas,
+    // so the fixed fields are taken from both ends and the branch is whatever is left in the middle.
+    private static String[] parseLegacyRecord(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length < 6) {
+            return null;
+        }
+        int n = parts.length;
+        String branchName = String.join(",", Arrays.copyOfRange(parts, 2, n - 3));
+        return new String[] { CREATE, parts[0], parts[1], branchName, parts[n - 3], parts[n - 2], parts[n - 1], null,
+                null };
+    }
+}
\ No newline at end of file
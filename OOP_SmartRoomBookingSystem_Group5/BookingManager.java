@@ -1,87 +1,904 @@
+import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.io.Serializable;
 
+// Bookings are kept in one BookingShard per branch. Anything about a single branch goes straight to its shard;
+// queries over every booking fan out to the shards in parallel on the common ForkJoin pool and merge the results.
 public class BookingManager implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private List<Booking> bookings;
+    private static final long serialVersionUID = 4L;
+    private static final int MAX_CASCADE_ATTEMPTS = 3;
+    private static final Comparator<Booking> BY_ID = Comparator
+            .comparingInt((Booking b) -> b.getBookingId().length())
+            .thenComparing(Booking::getBookingId);
+    private static final Comparator<RecurringBooking> SERIES_BY_ID = Comparator
+            .comparingInt((RecurringBooking s) -> s.getSeriesId().length())
+            .thenComparing(RecurringBooking::getSeriesId);
+
+    // Not serialized; see storeFactory().
+    private transient Supplier<BookingStore> storeFactory;
+    // Its monitor is held while a shard is added, and by runExclusive so that no shard appears while it runs.
+    private final Map<Branch, BookingShard> shards;
+    private final AtomicInteger nextShardOrdinal;
+    // Changes are published while their stripes are still held, so consumers see them in the order they happened
+    // to each room and date.
+    private transient volatile BookingEventBus eventBus;
 
     public BookingManager() {
-        this.bookings = new ArrayList<>();
+        this(ObjectBookingStore::new);
+    }
+
+    // Called once per branch; pass ColumnarBookingStore::new to keep large booking histories in primitive columns
+    // instead of objects.
+    public BookingManager(Supplier<BookingStore> storeFactory) {
+        this.storeFactory = storeFactory;
+        this.shards = new ConcurrentHashMap<>();
+        this.nextShardOrdinal = new AtomicInteger();
     }
 
     public Booking createBooking(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time) {
-        if (!room.getSchedule().isAvailable(date, time)) {
-            throw new IllegalStateException("Room is not available at the specified time.");
+        return createBooking(customer, branch, room, date, time, RoomSchedule.defaultEndTime(time));
+    }
+
+    public Booking createBooking(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        if (!RoomSchedule.isValidRange(startTime, endTime)) {
+            throw new IllegalArgumentException("End time " + endTime + " is not after start time " + startTime + ".");
         }
+        long started = System.nanoTime();
+        BookingShard shard = shardFor(branch);
+        ReentrantLock lock = shard.lockFor(room, date);
+        lock.lock();
+        try {
+            checkRegistered(branch, shard, room);
+            if (!room.getSchedule().isAvailable(date, startTime, endTime)) {
+                throw new IllegalStateException("Room is not available at the specified time.");
+            }
 
-        Booking booking = new Booking(customer, branch, room, date, time);
-        bookings.add(booking);
-        room.getSchedule().bookSlot(date, time);
-        return booking;
+            Booking booking = new Booking(customer, branch, room, date, startTime, endTime);
+            shard.bookings.put(booking);
+            room.getSchedule().bookSlot(date, startTime, endTime);
+            BookingEventBus bus = eventBus;
+            if (bus != null) {
+                bus.publishBookingCreated(booking);
+            }
+            return booking;
+        } finally {
+            lock.unlock();
+            BookingMetrics.CREATE_BOOKING.recordSince(started);
+        }
+    }
+
+    // Books every request or none. All affected (room, date) stripes are locked in a fixed order, the whole batch
+    // is checked against the schedules and against itself, and only then is anything booked.
+    public List<Booking> createBookings(List<BookingRequest> requests) {
+        List<ReentrantLock> batchLocks = locksFor(requests);
+        lockAll(batchLocks);
+        try {
+            checkRegistered(requests);
+            Map<SmartRoom, RoomSchedule> pending = new HashMap<>();
+            for (BookingRequest request : requests) {
+                SmartRoom room = request.getRoom();
+                RoomSchedule batchSchedule = pending.computeIfAbsent(room, k -> new RoomSchedule(k.getSchedule().getSlotMinutes()));
+                if (!room.getSchedule().isAvailable(request.getDate(), request.getStartTime(), request.getEndTime())
+                        || !batchSchedule.isAvailable(request.getDate(), request.getStartTime(), request.getEndTime())) {
+                    throw new IllegalStateException("Room is not available at the specified time: " + request);
+                }
+                batchSchedule.bookSlot(request.getDate(), request.getStartTime(), request.getEndTime());
+            }
+
+            List<Booking> created = new ArrayList<>(requests.size());
+            for (BookingRequest request : requests) {
+                Booking booking = new Booking(request.getCustomer(), request.getBranch(), request.getRoom(),
+                        request.getDate(), request.getStartTime(), request.getEndTime());
+                booking.setHeadcount(request.getHeadcount());
+                shardFor(request.getBranch()).bookings.put(booking);
+                request.getRoom().getSchedule().bookSlot(request.getDate(), request.getStartTime(), request.getEndTime());
+                created.add(booking);
+            }
+            BookingEventBus bus = eventBus;
+            if (bus != null) {
+                for (Booking booking : created) {
+                    bus.publishBookingCreated(booking);
+                }
+            }
+            return created;
+        } finally {
+            unlockAll(batchLocks);
+        }
+    }
+
+    // Books every occurrence of a series or none of them. Dates the branch is closed on (holidays included) are
+    // skipped; all other occurrences are checked against the room's schedule in one pass with every affected stripe
+    // held, and all conflicting dates are reported together.
+    public RecurringBooking createSeries(Customer customer, Branch branch, SmartRoom room, RecurringBooking.Pattern pattern,
+            LocalDate firstDate, LocalDate lastDate, LocalTime startTime, LocalTime endTime) {
+        List<LocalDate> dates = new ArrayList<>();
+        Set<LocalDate> skipped = new TreeSet<>();
+        BranchSchedule schedule = branch.getSchedule();
+        for (LocalDate date : RecurringBooking.patternDates(pattern, firstDate, lastDate)) {
+            if (schedule.isOperatingDay(date)) {
+                dates.add(date);
+            } else {
+                skipped.add(date);
+            }
+        }
+        if (dates.isEmpty()) {
+            throw new IllegalArgumentException("The branch is closed on every date of the series.");
+        }
+
+        BookingShard shard = shardFor(branch);
+        List<ReentrantLock> seriesLocks = shard.locksFor(room, dates);
+        lockAll(seriesLocks);
+        try {
+            checkRegistered(branch, shard, room);
+            List<LocalDate> conflicts = new ArrayList<>();
+            for (LocalDate date : dates) {
+                if (!room.getSchedule().isAvailable(date, startTime, endTime)) {
+                    conflicts.add(date);
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                throw new IllegalStateException("Room is not available at the specified time on " + conflicts + ".");
+            }
+
+            RecurringBooking recurring = new RecurringBooking(customer, branch, room, pattern, firstDate, lastDate,
+                    startTime, endTime, skipped);
+            shard.addSeriesToIndexes(recurring);
+            for (LocalDate date : dates) {
+                room.getSchedule().bookSlot(date, startTime, endTime);
+            }
+            BookingEventBus bus = eventBus;
+            if (bus != null) {
+                bus.publishSeriesCreated(recurring);
+            }
+            return recurring;
+        } finally {
+            unlockAll(seriesLocks);
+        }
+    }
+
+    public boolean cancelSeries(String seriesId) {
+        return removeSeries(seriesId, true);
+    }
+
+    // Removes a series without publishing an event, e.g. because it is being reloaded.
+    public boolean evictSeries(String seriesId) {
+        return removeSeries(seriesId, false);
+    }
+
+    private boolean removeSeries(String seriesId, boolean publish) {
+        RecurringBooking recurring = getSeriesById(seriesId);
+        if (recurring == null) {
+            return false;
+        }
+        BookingShard shard = shardFor(recurring.getBranch());
+        List<LocalDate> dates = recurring.getOccurrences();
+        List<ReentrantLock> seriesLocks = shard.locksFor(recurring.getRoom(), dates);
+        lockAll(seriesLocks);
+        try {
+            if (!shard.series.remove(seriesId, recurring)) {
+                return false;
+            }
+            shard.removeSeriesFromIndexes(recurring);
+            for (LocalDate date : dates) {
+                recurring.getRoom().getSchedule().freeSlot(date, recurring.getStartTime(), recurring.getEndTime());
+            }
+            BookingEventBus bus = eventBus;
+            if (publish && bus != null) {
+                bus.publishSeriesCancelled(seriesId);
+            }
+            return true;
+        } finally {
+            unlockAll(seriesLocks);
+        }
+    }
+
+    // Series with occurrences before the date.
+    public List<RecurringBooking> getSeriesBefore(LocalDate date) {
+        List<RecurringBooking> before = new ArrayList<>();
+        for (RecurringBooking recurring : getAllSeries()) {
+            if (recurring.getFirstDate().isBefore(date)) {
+                before.add(recurring);
+            }
+        }
+        return before;
+    }
+
+    // Forgets the occurrences of a series before the date, without publishing an event, once they have been
+    // archived. A series with nothing left is removed; the others keep their ID and start at their first
+    // occurrence from the date on.
+    public boolean evictSeriesBefore(String seriesId, LocalDate date) {
+        RecurringBooking recurring = getSeriesById(seriesId);
+        if (recurring == null) {
+            return false;
+        }
+        RecurringBooking remaining = recurring.between(date, recurring.getLastDate());
+        if (remaining == null) {
+            return evictSeries(seriesId);
+        }
+        List<LocalDate> dropped = new ArrayList<>();
+        for (LocalDate occurrence : recurring.getOccurrences()) {
+            if (occurrence.isBefore(date)) {
+                dropped.add(occurrence);
+            }
+        }
+        BookingShard shard = shardFor(recurring.getBranch());
+        List<ReentrantLock> seriesLocks = shard.locksFor(recurring.getRoom(), recurring.getOccurrences());
+        lockAll(seriesLocks);
+        try {
+            if (shard.series.get(seriesId) != recurring) {
+                return false;
+            }
+            shard.addSeriesToIndexes(remaining);
+            for (LocalDate occurrence : dropped) {
+                recurring.getRoom().getSchedule().freeSlot(occurrence, recurring.getStartTime(), recurring.getEndTime());
+            }
+            return true;
+        } finally {
+            unlockAll(seriesLocks);
+        }
+    }
+
+    public void addSeriesFromFile(RecurringBooking recurring) {
+        RecurringBooking.advanceCounterPast(recurring.getSeriesId());
+        BookingShard shard = shardFor(recurring.getBranch());
+        List<LocalDate> dates = recurring.getOccurrences();
+        List<ReentrantLock> seriesLocks = shard.locksFor(recurring.getRoom(), dates);
+        lockAll(seriesLocks);
+        try {
+            shard.addSeriesToIndexes(recurring);
+            for (LocalDate date : dates) {
+                recurring.getRoom().getSchedule().bookSlot(date, recurring.getStartTime(), recurring.getEndTime());
+            }
+        } finally {
+            unlockAll(seriesLocks);
+        }
+    }
+
+    public RecurringBooking getSeriesById(String seriesId) {
+        for (BookingShard shard : shards.values()) {
+            RecurringBooking recurring = shard.series.get(seriesId);
+            if (recurring != null) {
+                return recurring;
+            }
+        }
+        return null;
+    }
+
+    public List<RecurringBooking> getSeriesByUserId(String userId) {
+        List<RecurringBooking> copy = new ArrayList<>();
+        for (BookingShard shard : shards.values()) {
+            Set<RecurringBooking> bucket = shard.seriesByCustomer.get(userId);
+            if (bucket != null) {
+                copy.addAll(bucket);
+            }
+        }
+        copy.sort(SERIES_BY_ID);
+        return copy;
+    }
+
+    public List<RecurringBooking> getAllSeries() {
+        List<RecurringBooking> all = new ArrayList<>();
+        for (BookingShard shard : shards.values()) {
+            all.addAll(shard.series.values());
+        }
+        all.sort(SERIES_BY_ID);
+        return all;
     }
 
     public void viewAllBookings() {
-        if (bookings.isEmpty()) {
+        List<Booking> all = sorted(getAllBookings());
+        List<RecurringBooking> allSeries = getAllSeries();
+        if (all.isEmpty() && allSeries.isEmpty()) {
             System.out.println("No bookings found.");
             return;
         }
 
-        for (Booking booking : bookings) {
+        for (Booking booking : all) {
             booking.display();
         }
+        for (RecurringBooking recurring : allSeries) {
+            recurring.display();
+        }
     }
 
     public boolean deleteBooking(String bookingId) {
-        for (int i = 0; i < bookings.size(); i++) {
-            if (bookings.get(i).getBookingId().equals(bookingId)) {
-                Booking booking = bookings.remove(i);
-                // Free up the room slot
-                booking.getRoom().getSchedule().freeSlot(booking.getDate(), booking.getTime());
-                return true;
+        return removeBooking(bookingId, true);
+    }
+
+    // Removes a booking without publishing an event, e.g. because it has been archived or is being reloaded.
+    public boolean evictBooking(String bookingId) {
+        return removeBooking(bookingId, false);
+    }
+
+    private boolean removeBooking(String bookingId, boolean publish) {
+        long started = System.nanoTime();
+        Booking booking = findBooking(bookingId);
+        if (booking == null) {
+            BookingMetrics.DELETE_BOOKING.recordSince(started);
+            return false;
+        }
+        BookingShard shard = shardFor(booking.getBranch());
+        ReentrantLock lock = shard.lockFor(booking.getRoom(), booking.getDate());
+        lock.lock();
+        try {
+            Booking removed = shard.bookings.remove(bookingId);
+            if (removed == null) {
+                return false;
+            }
+            // Free up the room slot
+            removed.getRoom().getSchedule().freeSlot(removed.getDate(), removed.getTime(), removed.getEndTime());
+            BookingEventBus bus = eventBus;
+            if (publish && bus != null) {
+                bus.publishBookingCancelled(bookingId);
             }
+            return true;
+        } finally {
+            lock.unlock();
+            BookingMetrics.DELETE_BOOKING.recordSince(started);
         }
-        return false;
     }
 
-    public Booking getBookingById(String bookingId) {
-        for (Booking booking : bookings) {
-            if (booking.getBookingId().equals(bookingId)) {
-                return booking;
+    public interface ExclusiveAction {
+        void run() throws IOException;
+    }
+
+    // Runs the action while no booking or series can change: every stripe of every shard is held and no shard can
+    // be added. Changes are published before their stripes are released, so every change made so far is on the
+    // bus and none is in flight. The journal is compacted and snapshots are written this way, so that what they
+    // read matches the events published up to that point. Bookings wait for the action to finish.
+    public void runExclusive(ExclusiveAction action) throws IOException {
+        synchronized (shards) {
+            List<BookingShard> ordered = new ArrayList<>(shards.values());
+            ordered.sort(Comparator.comparingInt(s -> s.ordinal));
+            List<ReentrantLock> allLocks = new ArrayList<>();
+            for (BookingShard shard : ordered) {
+                allLocks.addAll(shard.allLocks());
+            }
+            lockAll(allLocks);
+            try {
+                action.run();
+            } finally {
+                unlockAll(allLocks);
             }
         }
-        return null;
     }
 
-    public List<Booking> getBookingsByUserName(String userName) {
-        List<Booking> userBookings = new ArrayList<>();
-        for (Booking booking : bookings) {
-            if (booking.getCustomer().getName().equals(userName)) {
-                userBookings.add(booking);
+    // Drops the shard of a branch that has been deleted, so it and its rooms are no longer reachable from here.
+    // Whatever it still holds (normally only past bookings, once cascade has dealt with the rest) is cancelled
+    // with it, so the journal keeps no records for a branch that is gone. Bookings for the branch that were still
+    // waiting for a stripe fail with IllegalStateException.
+    public void removeBranch(Branch branch) {
+        synchronized (shards) {
+            BookingShard shard = shards.get(branch);
+            if (shard == null) {
+                return;
             }
+            List<ReentrantLock> shardLocks = shard.allLocks();
+            lockAll(shardLocks);
+            try {
+                List<BookingEvent> events = new ArrayList<>();
+                for (Booking booking : shard.bookings.getAll()) {
+                    shard.bookings.remove(booking.getBookingId());
+                    booking.getRoom().getSchedule().freeSlot(booking.getDate(), booking.getTime(), booking.getEndTime());
+                    events.add(BookingEvent.of(BookingEvent.Type.BOOKING_CANCELLED, booking.getBookingId(), null, null));
+                }
+                for (RecurringBooking recurring : shard.series.values()) {
+                    for (LocalDate date : recurring.getOccurrences()) {
+                        recurring.getRoom().getSchedule().freeSlot(date, recurring.getStartTime(), recurring.getEndTime());
+                    }
+                    events.add(BookingEvent.of(BookingEvent.Type.SERIES_CANCELLED, recurring.getSeriesId(), null, null));
+                }
+                shard.clear();
+                shards.remove(branch);
+                BookingEventBus bus = eventBus;
+                if (bus != null) {
+                    bus.publishAll(events);
+                }
+            } finally {
+                unlockAll(shardLocks);
+            }
+        }
+    }
+
+    // Takes the room out of the branch with every stripe of the branch's shard held, the way removeBranch drops a
+    // shard, so a booking for the room either got in before and shows up in impactOfRoomRemoval, or fails with
+    // IllegalStateException. Returns false if the branch has no such room.
+    public boolean removeRoom(Branch branch, SmartRoom room) {
+        synchronized (shards) {
+            BookingShard shard = shards.get(branch);
+            List<ReentrantLock> shardLocks = shard == null ? List.of() : shard.allLocks();
+            lockAll(shardLocks);
+            try {
+                return branch.getRoomById(room.getRoomId()) == room && branch.deleteRoom(room.getRoomId());
+            } finally {
+                unlockAll(shardLocks);
+            }
+        }
+    }
+
+    // Creations and cancellations are published to the bus from now on; pass null to stop publishing.
+    public void setEventBus(BookingEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    public Booking getBookingById(String bookingId) {
+        long started = System.nanoTime();
+        Booking booking = findBooking(bookingId);
+        BookingMetrics.GET_BOOKING_BY_ID.recordSince(started);
+        return booking;
+    }
+
+    public List<Booking> getBookingsByUserId(String userId) {
+        long started = System.nanoTime();
+        List<Booking> userBookings = new ArrayList<>();
+        for (BookingShard shard : shards.values()) {
+            userBookings.addAll(shard.bookings.getByCustomer(userId));
         }
+        sorted(userBookings);
+        BookingMetrics.GET_BOOKINGS_BY_USER_ID.recordSince(started);
         return userBookings;
     }
 
+    public List<Booking> getBookingsByUserName(String userName) {
+        long started = System.nanoTime();
+        List<Booking> userBookings = sorted(fanOut(shard -> {
+            List<Booking> matches = new ArrayList<>();
+            for (Booking booking : shard.bookings.getAll()) {
+                if (booking.getCustomer().getName().equals(userName)) {
+                    matches.add(booking);
+                }
+            }
+            return matches;
+        }));
+        BookingMetrics.GET_BOOKINGS_BY_USER_NAME.recordSince(started);
+        return userBookings;
+    }
+
+    public List<Booking> getBookingsByRoomAndDate(SmartRoom room, LocalDate date) {
+        long started = System.nanoTime();
+        List<Booking> roomBookings = new ArrayList<>();
+        for (BookingShard shard : shards.values()) {
+            roomBookings.addAll(shard.bookings.getByRoomAndDate(room, date));
+        }
+        sorted(roomBookings);
+        BookingMetrics.GET_BOOKINGS_BY_ROOM_AND_DATE.recordSince(started);
+        return roomBookings;
+    }
+
+    // Every booking of the room, whichever branch it is in.
+    public List<Booking> getBookingsByRoom(SmartRoom room) {
+        List<Booking> roomBookings = new ArrayList<>();
+        for (BookingShard shard : shards.values()) {
+            roomBookings.addAll(shard.bookings.getByRoom(room));
+        }
+        return sorted(roomBookings);
+    }
+
+    public List<Booking> getBookingsByBranchAndDate(Branch branch, LocalDate date) {
+        BookingShard shard = shards.get(branch);
+        return shard == null ? new ArrayList<>() : sorted(shard.bookings.getByDate(date));
+    }
+
+    // The room's bookings that have not taken place yet, and the series booked in it.
+    public BookingImpact impactOfRoomRemoval(Branch branch, SmartRoom room) {
+        List<Booking> affected = new ArrayList<>();
+        List<RecurringBooking> affectedSeries = new ArrayList<>();
+        BookingShard shard = shards.get(branch);
+        if (shard != null) {
+            addUpcoming(affected, shard.bookings.getByRoom(room));
+            for (RecurringBooking recurring : shard.seriesByRoom.getOrDefault(room, Set.of())) {
+                addUpcoming(affectedSeries, recurring);
+            }
+        }
+        return impact(branch, room, Set.of(), affected, affectedSeries);
+    }
+
+    // Bookings on the dates that have not taken place yet, and the series that meet on any of them. A branch has
+    // few series, so they are checked against the dates directly.
+    public BookingImpact impactOfClosing(Branch branch, Collection<LocalDate> dates) {
+        List<Booking> affected = new ArrayList<>();
+        List<RecurringBooking> affectedSeries = new ArrayList<>();
+        BookingShard shard = shards.get(branch);
+        if (shard != null) {
+            for (LocalDate date : new TreeSet<>(dates)) {
+                addUpcoming(affected, shard.bookings.getByDate(date));
+            }
+            for (RecurringBooking recurring : shard.series.values()) {
+                if (dates.stream().anyMatch(recurring::occursOn)) {
+                    affectedSeries.add(recurring);
+                }
+            }
+        }
+        return impact(branch, null, new TreeSet<>(dates), affected, affectedSeries);
+    }
+
+    public BookingImpact impactOfBranchRemoval(Branch branch) {
+        List<Booking> affected = new ArrayList<>();
+        List<RecurringBooking> affectedSeries = new ArrayList<>();
+        BookingShard shard = shards.get(branch);
+        if (shard != null) {
+            addUpcoming(affected, shard.bookings.getAll());
+            for (RecurringBooking recurring : shard.series.values()) {
+                addUpcoming(affectedSeries, recurring);
+            }
+        }
+        return impact(branch, null, Set.of(), affected, affectedSeries);
+    }
+
+    // Cancels the impact's bookings or, with RELOCATE, moves each one to the smallest free room in
+    // relocationBranches that seats its party, cancelling those that fit nowhere. Series are
+    // cancelled, or lose just the closed dates. Everything is done with every affected stripe held and published
+    // as one run of events, so the journal commits it as one batch. Bookings cancelled in the meantime are left
+    // out; if someone books a chosen room first, the moves are planned again.
+    public BookingImpact.Outcome cascade(BookingImpact impact, BookingImpact.Action action,
+            List<Branch> relocationBranches) {
+        for (int attempt = 1; ; attempt++) {
+            BookingImpact.Outcome outcome = tryCascade(impact, action, relocationBranches);
+            if (outcome != null) {
+                return outcome;
+            }
+            if (attempt == MAX_CASCADE_ATTEMPTS) {
+                throw new IllegalStateException("Rooms kept being booked while the affected bookings were being moved.");
+            }
+        }
+    }
+
+    // Returns null when a room picked for a move was booked before the locks were taken.
+    private BookingImpact.Outcome tryCascade(BookingImpact impact, BookingImpact.Action action,
+            List<Branch> relocationBranches) {
+        Map<Booking, BookingRequest> moves = new LinkedHashMap<>();
+        if (action == BookingImpact.Action.RELOCATE) {
+            Map<SmartRoom, RoomSchedule> promised = new HashMap<>();
+            for (Booking booking : impact.getBookings()) {
+                BookingRequest target = findRelocation(booking, impact, relocationBranches, promised);
+                if (target != null) {
+                    moves.put(booking, target);
+                }
+            }
+        }
+        List<BookingRequest> touched = new ArrayList<>(moves.values());
+        for (Booking booking : impact.getBookings()) {
+            touched.add(new BookingRequest(booking.getCustomer(), booking.getBranch(), booking.getRoom(),
+                    booking.getDate(), booking.getTime(), booking.getEndTime()));
+        }
+        for (RecurringBooking recurring : impact.getSeries()) {
+            for (LocalDate date : recurring.getOccurrences()) {
+                touched.add(new BookingRequest(recurring.getCustomer(), recurring.getBranch(), recurring.getRoom(),
+                        date, recurring.getStartTime(), recurring.getEndTime()));
+            }
+        }
+
+        List<ReentrantLock> batchLocks = locksFor(touched);
+        lockAll(batchLocks);
+        try {
+            // The impact's own bookings may be in the room being removed; only the rooms moved into must still be
+            // there.
+            checkBranchesRegistered(touched);
+            for (BookingRequest target : moves.values()) {
+                if (!isCurrentRoom(target.getBranch(), target.getRoom()) || !target.getRoom().getSchedule()
+                        .isAvailable(target.getDate(), target.getStartTime(), target.getEndTime())) {
+                    return null;
+                }
+            }
+
+            BookingImpact.Outcome outcome = new BookingImpact.Outcome();
+            List<BookingEvent> events = new ArrayList<>();
+            for (Booking booking : impact.getBookings()) {
+                Booking removed = shardFor(booking.getBranch()).bookings.remove(booking.getBookingId());
+                if (removed == null) {
+                    continue;
+                }
+                removed.getRoom().getSchedule().freeSlot(removed.getDate(), removed.getTime(), removed.getEndTime());
+                events.add(BookingEvent.of(BookingEvent.Type.BOOKING_CANCELLED, removed.getBookingId(), null, null));
+                BookingRequest target = moves.get(booking);
+                if (target == null) {
+                    outcome.cancelled(removed);
+                    continue;
+                }
+                Booking moved = new Booking(removed.getCustomer(), target.getBranch(), target.getRoom(),
+                        target.getDate(), target.getStartTime(), target.getEndTime());
+                moved.setHeadcount(target.getHeadcount());
+                shardFor(target.getBranch()).bookings.put(moved);
+                target.getRoom().getSchedule().bookSlot(target.getDate(), target.getStartTime(), target.getEndTime());
+                events.add(BookingEvent.of(BookingEvent.Type.BOOKING_CREATED, moved.getBookingId(), moved, null));
+                outcome.relocated(removed, moved);
+            }
+            for (RecurringBooking recurring : impact.getSeries()) {
+                BookingShard shard = shardFor(recurring.getBranch());
+                if (shard.series.get(recurring.getSeriesId()) != recurring) {
+                    continue;
+                }
+                List<LocalDate> closed = new ArrayList<>();
+                for (LocalDate date : impact.getDates()) {
+                    if (recurring.occursOn(date)) {
+                        closed.add(date);
+                    }
+                }
+                if (!impact.getDates().isEmpty() && closed.isEmpty()) {
+                    continue;
+                }
+                List<LocalDate> occurrences = recurring.getOccurrences();
+                boolean trim = !closed.isEmpty() && closed.size() < occurrences.size();
+                for (LocalDate date : trim ? closed : occurrences) {
+                    recurring.getRoom().getSchedule().freeSlot(date, recurring.getStartTime(), recurring.getEndTime());
+                }
+                events.add(BookingEvent.of(BookingEvent.Type.SERIES_CANCELLED, recurring.getSeriesId(), null, null));
+                if (trim) {
+                    // Same ID, so the journal's cancel-then-create pair replays to the trimmed series.
+                    RecurringBooking trimmed = recurring.withSkippedDates(closed);
+                    shard.addSeriesToIndexes(trimmed);
+                    events.add(BookingEvent.of(BookingEvent.Type.SERIES_CREATED, trimmed.getSeriesId(), null, trimmed));
+                    outcome.trimmedSeries(trimmed);
+                } else {
+                    shard.series.remove(recurring.getSeriesId(), recurring);
+                    shard.removeSeriesFromIndexes(recurring);
+                    outcome.cancelledSeries(recurring);
+                }
+            }
+            BookingEventBus bus = eventBus;
+            if (bus != null) {
+                bus.publishAll(events);
+            }
+            return outcome;
+        } finally {
+            unlockAll(batchLocks);
+        }
+    }
+
+    // Only meant for (re)loading; not atomic with respect to bookings made at the same time.
     public void clearBookings() {
-        bookings.clear();
+        for (Booking booking : getAllBookings()) {
+            evictBooking(booking.getBookingId());
+        }
+        for (RecurringBooking recurring : getAllSeries()) {
+            evictSeries(recurring.getSeriesId());
+        }
+        for (BookingShard shard : shards.values()) {
+            shard.clear();
+        }
+        // Reloading may replace the branches themselves.
+        shards.clear();
     }
 
-    public void addBookingFromFile(String bookingId, Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time) {
-        Booking booking = new Booking(customer, branch, room, date, time);
+    public boolean addBookingFromFile(String bookingId, Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time) {
+        return addBookingFromFile(bookingId, customer, branch, room, date, time, RoomSchedule.defaultEndTime(time));
+    }
+
+    // Returns false, and adds nothing, when the booking overlaps one already loaded. Old records without an end
+    // time get the default length and can run into each other; freeing one would then clear the other's slots too.
+    public boolean addBookingFromFile(String bookingId, Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime time, LocalTime endTime) {
+        return addBookingFromFile(bookingId, customer, branch, room, date, time, endTime, 0);
+    }
+
+    // A headcount of 0 means it is not known.
+    public boolean addBookingFromFile(String bookingId, Customer customer, Branch branch, SmartRoom room, LocalDate date,
+            LocalTime time, LocalTime endTime, int headcount) {
+        Booking booking = new Booking(bookingId, customer, branch, room, date, time, endTime);
+        booking.setHeadcount(headcount);
+        Booking.advanceCounterPast(bookingId);
+        BookingShard shard = shardFor(branch);
+        ReentrantLock lock = shard.lockFor(room, date);
+        lock.lock();
         try {
-            java.lang.reflect.Field idField = Booking.class.getDeclaredField("bookingId");
-            idField.setAccessible(true);
-            idField.set(booking, bookingId);
-        } catch (Exception e) {
+            if (!room.getSchedule().isAvailable(date, time, endTime)) {
+                return false;
+            }
+            shard.bookings.put(booking);
+            room.getSchedule().bookSlot(date, time, endTime);
+            return true;
+        } finally {
+            lock.unlock();
         }
-        bookings.add(booking);
-        room.getSchedule().bookSlot(date, time);
     }
 
+    // In no particular order; callers that show them sort them.
     public List<Booking> getAllBookings() {
-        return bookings;
+        return fanOut(shard -> shard.bookings.getAll());
+    }
+
+    public List<Booking> getBookingsBefore(LocalDate date) {
+        return sorted(fanOut(shard -> shard.bookings.getDatedBefore(date)));
+    }
+
+    // Marks every confirmed booking whose time is over as completed and returns how many were marked.
+    public int completeElapsedBookings(LocalDateTime now) {
+        return shards.values().parallelStream().mapToInt(shard -> {
+            int completed = 0;
+            for (Booking booking : shard.bookings.getDatedBefore(now.toLocalDate().plusDays(1))) {
+                if (booking.getStatus() == BookingStatus.CONFIRMED && booking.hasEnded(now)
+                        && shard.bookings.setStatus(booking.getBookingId(), BookingStatus.COMPLETED)) {
+                    completed++;
+                }
+            }
+            return completed;
+        }).sum();
+    }
+
+    public int getBookingCount() {
+        int count = 0;
+        for (BookingShard shard : shards.values()) {
+            count += shard.bookings.size();
+        }
+        return count;
+    }
+
+    private BookingShard shardFor(Branch branch) {
+        BookingShard shard = shards.get(branch);
+        if (shard == null) {
+            synchronized (shards) {
+                shard = shards.computeIfAbsent(branch, b -> new BookingShard(nextShardOrdinal.getAndIncrement(),
+                        storeFactory().get()));
+            }
+        }
+        return shard;
+    }
+
+    // A deserialized manager has no factory; its new shards get the kind of store its existing shards use.
+    private Supplier<BookingStore> storeFactory() {
+        if (storeFactory == null) {
+            boolean columnar = shards.values().stream().anyMatch(s -> s.bookings instanceof ColumnarBookingStore);
+            storeFactory = columnar ? ColumnarBookingStore::new : ObjectBookingStore::new;
+        }
+        return storeFactory;
+    }
+
+    // Shards are only removed, and rooms only taken out of their branch (see removeRoom), with all the shard's
+    // stripes held, so once a caller holds its stripes this settles whether the branch and room still take
+    // bookings.
+    private void checkRegistered(Branch branch, BookingShard shard, SmartRoom room) {
+        if (shards.get(branch) != shard) {
+            throw new IllegalStateException("Building " + branch.getName() + " has been deleted.");
+        }
+        if (!isCurrentRoom(branch, room)) {
+            throw new IllegalStateException("Room " + room.getRoomId() + " has been removed from " + branch.getName()
+                    + ".");
+        }
+    }
+
+    private void checkRegistered(List<BookingRequest> requests) {
+        checkBranchesRegistered(requests);
+        for (BookingRequest request : requests) {
+            if (!isCurrentRoom(request.getBranch(), request.getRoom())) {
+                throw new IllegalStateException("Room " + request.getRoom().getRoomId() + " has been removed from "
+                        + request.getBranch().getName() + ".");
+            }
+        }
+    }
+
+    private void checkBranchesRegistered(List<BookingRequest> requests) {
+        for (BookingRequest request : requests) {
+            if (!shards.containsKey(request.getBranch())) {
+                throw new IllegalStateException("Building " + request.getBranch().getName() + " has been deleted.");
+            }
+        }
+    }
+
+    private static boolean isCurrentRoom(Branch branch, SmartRoom room) {
+        return branch.getRoomById(room.getRoomId()) == room;
+    }
+
+    // A booking ID does not say which branch it belongs to, so every shard is asked in turn.
+    private Booking findBooking(String bookingId) {
+        for (BookingShard shard : shards.values()) {
+            Booking booking = shard.bookings.get(bookingId);
+            if (booking != null) {
+                return booking;
+            }
+        }
+        return null;
+    }
+
+    private <T> List<T> fanOut(Function<BookingShard, List<T>> query) {
+        return shards.values().parallelStream()
+                .flatMap(shard -> query.apply(shard).stream())
+                .collect(Collectors.toList());
+    }
+
+    // The smallest room in the branches that seats the booking's headcount (or, when that is not known, as many as
+    // its room) and is free at its time, leaving out the room or branch the impact is about and rooms promised to
+    // earlier bookings of the same cascade. Ties go to the earlier branch.
+    private static BookingRequest findRelocation(Booking booking, BookingImpact impact, List<Branch> branches,
+            Map<SmartRoom, RoomSchedule> promised) {
+        LocalDate date = booking.getDate();
+        LocalTime startTime = booking.getTime();
+        LocalTime endTime = booking.getEndTime();
+        int seats = booking.getHeadcount() > 0 ? booking.getHeadcount() : booking.getRoom().getCapacity();
+        Branch bestBranch = null;
+        SmartRoom best = null;
+        for (Branch branch : branches) {
+            if ((impact.getRoom() == null && branch == impact.getBranch())
+                    || !branch.getSchedule().isValidBooking(date, startTime, endTime)) {
+                continue;
+            }
+            for (SmartRoom room : branch.getRooms()) {
+                if (room == impact.getRoom() || room.getCapacity() < seats
+                        || (best != null && room.getCapacity() >= best.getCapacity())) {
+                    continue;
+                }
+                RoomSchedule taken = promised.get(room);
+                if (room.getSchedule().isAvailable(date, startTime, endTime)
+                        && (taken == null || taken.isAvailable(date, startTime, endTime))) {
+                    bestBranch = branch;
+                    best = room;
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        promised.computeIfAbsent(best, k -> new RoomSchedule(k.getSchedule().getSlotMinutes()))
+                .bookSlot(date, startTime, endTime);
+        return new BookingRequest(booking.getCustomer(), bestBranch, best, date, startTime, endTime,
+                booking.getHeadcount());
+    }
+
+    private static BookingImpact impact(Branch branch, SmartRoom room, Set<LocalDate> dates, List<Booking> affected,
+            List<RecurringBooking> affectedSeries) {
+        affectedSeries.sort(SERIES_BY_ID);
+        return new BookingImpact(branch, room, dates, sorted(affected), affectedSeries);
+    }
+
+    private static void addUpcoming(List<Booking> affected, List<Booking> bookings) {
+        for (Booking booking : bookings) {
+            if (booking.getStatus() != BookingStatus.COMPLETED) {
+                affected.add(booking);
+            }
+        }
+    }
+
+    private static void addUpcoming(List<RecurringBooking> affected, RecurringBooking recurring) {
+        if (!recurring.getLastDate().isBefore(LocalDate.now())) {
+            affected.add(recurring);
+        }
+    }
+
+    private static List<Booking> sorted(List<Booking> list) {
+        list.sort(BY_ID);
+        return list;
+    }
+
+    // Shards are locked in ordinal order and stripes in ascending order within each, so overlapping batches cannot
+    // deadlock.
+    private List<ReentrantLock> locksFor(List<BookingRequest> requests) {
+        Map<BookingShard, TreeSet<Integer>> stripes = new TreeMap<>(Comparator.comparingInt(s -> s.ordinal));
+        for (BookingRequest request : requests) {
+            stripes.computeIfAbsent(shardFor(request.getBranch()), k -> new TreeSet<>())
+                    .add(BookingShard.stripeFor(request.getRoom(), request.getDate()));
+        }
+        List<ReentrantLock> batchLocks = new ArrayList<>();
+        for (Map.Entry<BookingShard, TreeSet<Integer>> entry : stripes.entrySet()) {
+            batchLocks.addAll(entry.getKey().locksFor(entry.getValue()));
+        }
+        return batchLocks;
+    }
+
+    private static void lockAll(List<ReentrantLock> batchLocks) {
+        for (ReentrantLock lock : batchLocks) {
+            lock.lock();
+        }
+    }
+
+    private static void unlockAll(List<ReentrantLock> batchLocks) {
+        for (int i = batchLocks.size() - 1; i >= 0; i--) {
+            batchLocks.get(i).unlock();
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
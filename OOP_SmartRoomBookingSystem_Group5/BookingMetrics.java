@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Latency recorders for the booking hot paths. Each one is published as a platform MBean under
+// SmartRoomBookingSystem:type=Latency,name=<operation> (visible in jconsole / VisualVM), and startDump() writes
+// the same figures to a text file at a fixed interval.
+public class BookingMetrics {
+    private static final String DOMAIN = "SmartRoomBookingSystem";
+    private static final List<LatencyRecorder> RECORDERS = new CopyOnWriteArrayList<>();
+
+    public static final LatencyRecorder CREATE_BOOKING = register("BookingManager.createBooking");
+    public static final LatencyRecorder DELETE_BOOKING = register("BookingManager.deleteBooking");
+    public static final LatencyRecorder GET_BOOKING_BY_ID = register("BookingManager.getBookingById");
+    public static final LatencyRecorder GET_BOOKINGS_BY_USER_ID = register("BookingManager.getBookingsByUserId");
+    public static final LatencyRecorder GET_BOOKINGS_BY_USER_NAME = register("BookingManager.getBookingsByUserName");
+    public static final LatencyRecorder GET_BOOKINGS_BY_ROOM_AND_DATE = register("BookingManager.getBookingsByRoomAndDate");
+    public static final LatencyRecorder GET_AVAILABLE_ROOMS = register("Branch.getAvailableRooms");
+    public static final LatencyRecorder SCHEDULE_IS_AVAILABLE = register("RoomSchedule.isAvailable");
+    public static final LatencyRecorder SCHEDULE_BOOK_SLOT = register("RoomSchedule.bookSlot");
+    public static final LatencyRecorder SCHEDULE_FREE_SLOT = register("RoomSchedule.freeSlot");
+    public static final LatencyRecorder LOAD_USERS = register("MainMenu.loadUsersFromFile");
+    public static final LatencyRecorder SAVE_USERS = register("MainMenu.saveUsersToFile");
+    public static final LatencyRecorder LOAD_BOOKINGS = register("MainMenu.loadBookingsFromFile");
+    public static final LatencyRecorder SAVE_BOOKINGS = register("MainMenu.saveBookingsToFile");
+    // Time from publishing a booking event until the metrics consumer sees it.
+    public static final LatencyRecorder EVENT_DELIVERY = register("BookingEventBus.delivery");
+
+    private static ScheduledExecutorService dumper;
+
+    private BookingMetrics() {
+    }
+
+    private static LatencyRecorder register(String name) {
+        LatencyRecorder recorder = new LatencyRecorder(name);
+        RECORDERS.add(recorder);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Latency,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(recorder, objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            // Metrics are still recorded and dumped; they are just not visible over JMX.
+        }
+        return recorder;
+    }
+
+    public static List<LatencyRecorder> getRecorders() {
+        return new ArrayList<>(RECORDERS);
+    }
+
+    public static void resetAll() {
+        for (LatencyRecorder recorder : RECORDERS) {
+            recorder.reset();
+        }
+    }
+
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("# Booking metrics at ").append(LocalDateTime.now()).append(System.lineSeparator());
+        for (LatencyRecorder recorder : RECORDERS) {
+            if (recorder.getCount() > 0) {
+                report.append(recorder).append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+
+    // Rewrites the file with a fresh report every periodSeconds. The file is replaced atomically, so a reader
+    // never sees half a report.
+    public static synchronized void startDump(String fileName, long periodSeconds) {
+        if (dumper != null) {
+            return;
+        }
+        Path file = Paths.get(fileName).toAbsolutePath();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "booking-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                Files.write(temporary, report().getBytes(StandardCharsets.UTF_8));
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+public class BookingRequest {
+    private Customer customer;
+    private Branch branch;
+    private SmartRoom room;
+    private LocalDate date;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    // Number of people, or 0 when not given.
+    private int headcount;
+
+    public BookingRequest(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime startTime) {
+        this(customer, branch, room, date, startTime, RoomSchedule.defaultEndTime(startTime));
+    }
+
+    public BookingRequest(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        this(customer, branch, room, date, startTime, endTime, 0);
+    }
+
+    public BookingRequest(Customer customer, Branch branch, SmartRoom room, LocalDate date, LocalTime startTime,
+            LocalTime endTime, int headcount) {
+        this.customer = customer;
+        this.branch = branch;
+        this.room = room;
+        this.date = date;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.headcount = headcount;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    public SmartRoom getRoom() {
+        return room;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public int getHeadcount() {
+        return headcount;
+    }
+
+    public String toString() {
+        return (room == null ? "?" : room.getRoomId()) + " at " + (branch == null ? "?" : branch.getName())
+                + " on " + date + " " + startTime + "-" + endTime;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Non-interactive entry point for making and cancelling bookings. A batch is validated in one pass and booked
+// all-or-nothing by the BookingManager, which publishes the change to its event bus; the journal is written by a
+// consumer of that bus, so calls return as soon as the bookings are in memory. Callers that must not acknowledge a
+// change before it is on disk wait for whenDurable(). Availability searches go through an AvailabilityCache.
+public class BookingService {
+    private static final int MAX_ALLOCATION_ATTEMPTS = 3;
+
+    private final BookingManager bookingManager;
+    private final GroupCommitWriter journalWriter;
+    private final AvailabilityCache availabilityCache;
+
+    public BookingService(BookingManager bookingManager) {
+        this(bookingManager, null);
+    }
+
+    // Without a journal writer nothing is persisted and changes count as durable at once.
+    public BookingService(BookingManager bookingManager, GroupCommitWriter journalWriter) {
+        this(bookingManager, journalWriter, new AvailabilityCache());
+    }
+
+    public BookingService(BookingManager bookingManager, GroupCommitWriter journalWriter,
+            AvailabilityCache availabilityCache) {
+        this.bookingManager = bookingManager;
+        this.journalWriter = journalWriter;
+        this.availabilityCache = availabilityCache;
+    }
+
+    public BookingManager getBookingManager() {
+        return bookingManager;
+    }
+
+    public AvailabilityCache getAvailabilityCache() {
+        return availabilityCache;
+    }
+
+    // Completes once every change the calling thread has made so far is on disk.
+    public CompletableFuture<Void> whenDurable() {
+        return journalWriter == null ? CompletableFuture.completedFuture(null) : journalWriter.whenDurable();
+    }
+
+    // Blocks until whenDurable() completes. Throws UncheckedIOException if the changes could not be saved in time;
+    // they stay in effect and saving them is retried.
+    public void awaitDurable(long timeoutMillis) {
+        try {
+            whenDurable().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Changes were made but could not be saved yet: " + e.getCause().getMessage(),
+                    new IOException(e.getCause()));
+        } catch (TimeoutException e) {
+            throw new UncheckedIOException("Changes were made but are taking long to save.", new IOException(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException("Interrupted while saving changes.", new InterruptedIOException());
+        }
+    }
+
+    public Booking createBooking(BookingRequest request) {
+        return createBookings(List.of(request)).get(0);
+    }
+
+    // Throws IllegalArgumentException listing every invalid request, or IllegalStateException if any requested
+    // slot is taken (including by another request in the same batch). Nothing is booked in either case.
+    public List<Booking> createBookings(List<BookingRequest> requests) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String error = BookingValidator.validate(requests.get(i));
+            if (error != null) {
+                errors.add("Request " + (i + 1) + " (" + requests.get(i) + "): " + error);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("\n", errors));
+        }
+
+        return bookingManager.createBookings(requests);
+    }
+
+    // Books a whole series as one rule and one event. Throws IllegalArgumentException if the series is
+    // invalid, or IllegalStateException listing every date on which the room is already taken.
+    public RecurringBooking createSeries(Customer customer, Branch branch, SmartRoom room, RecurringBooking.Pattern pattern,
+            LocalDate firstDate, LocalDate lastDate, LocalTime startTime, LocalTime endTime) {
+        String error = BookingValidator.validateSeries(customer, branch, room, firstDate, lastDate, startTime, endTime);
+        if (error != null) {
+            throw new IllegalArgumentException("Series could not be booked: " + error);
+        }
+        return bookingManager.createSeries(customer, branch, room, pattern, firstDate, lastDate, startTime, endTime);
+    }
+
+    public boolean cancelSeries(String seriesId) {
+        return bookingManager.cancelSeries(seriesId);
+    }
+
+    public List<RecurringBooking> getSeriesForUser(String userId) {
+        return bookingManager.getSeriesByUserId(userId);
+    }
+
+    public boolean cancelBooking(String bookingId) {
+        Booking booking = bookingManager.getBookingById(bookingId);
+        if (booking != null && booking.getStatus() == BookingStatus.COMPLETED) {
+            throw new IllegalStateException("Booking " + bookingId + " has already taken place.");
+        }
+        return bookingManager.deleteBooking(bookingId);
+    }
+
+    public List<Booking> getBookingsForUser(String userId) {
+        return bookingManager.getBookingsByUserId(userId);
+    }
+
+    public List<SmartRoom> findAvailableRooms(Branch branch, String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        if (!branch.getSchedule().isValidBooking(date, startTime, endTime)) {
+            return List.of();
+        }
+        return availabilityCache.getAvailableRooms(branch, type, date, startTime, endTime);
+    }
+
+    // The smallest free room in any of the branches that seats headcount people for the slot, as a request ready to
+    // book; ties go to the earlier branch. A null type allows rooms of any type. Returns null when nothing fits.
+    public BookingRequest findBestFit(Customer customer, List<Branch> branches, String type, int headcount,
+            LocalDate date, LocalTime startTime, LocalTime endTime) {
+        if (headcount <= 0) {
+            throw new IllegalArgumentException("Number of people must be at least 1.");
+        }
+        String roomType = type == null ? null : RoomType.fromString(type).getDisplayName();
+        BookingRequest best = null;
+        for (Branch branch : branches) {
+            if (!branch.getSchedule().isValidBooking(date, startTime, endTime)) {
+                continue;
+            }
+            SmartRoom room = branch.findBestFitRoom(roomType, headcount, date, startTime, endTime);
+            if (room != null && (best == null || room.getCapacity() < best.getRoom().getCapacity())) {
+                best = new BookingRequest(customer, branch, room, date, startTime, endTime, headcount);
+            }
+        }
+        return best;
+    }
+
+    // Books the best fit, looking again if someone else books that room first. Returns null when nothing fits.
+    public Booking allocateRoom(Customer customer, List<Branch> branches, String type, int headcount, LocalDate date,
+            LocalTime startTime, LocalTime endTime) {
+        for (int attempt = 1; ; attempt++) {
+            BookingRequest request = findBestFit(customer, branches, type, headcount, date, startTime, endTime);
+            if (request == null) {
+                return null;
+            }
+            try {
+                return createBooking(request);
+            } catch (IllegalStateException e) {
+                if (attempt == MAX_ALLOCATION_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Earliest free starts for durationMinutes in any of the given branches between fromDate and toDate inclusive.
+    public List<SlotFinder.Candidate> findNextAvailableSlots(List<Branch> branches, String type, int minCapacity,
+            int durationMinutes, LocalDate fromDate, LocalDate toDate, int limit) {
+        return SlotFinder.findEarliest(branches, type, minCapacity, durationMinutes, fromDate, toDate, limit,
+                LocalDateTime.now());
+    }
+}
\ No newline at end of file
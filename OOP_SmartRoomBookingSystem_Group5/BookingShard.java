@@ -0,0 +1,105 @@
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The bookings, series and lock stripes of one branch. BookingManager keeps one shard per branch, so bookings at
+// different branches never touch the same maps or locks.
+class BookingShard implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int LOCK_STRIPES = 64;
+
+    // Batches spanning several branches lock shards in ordinal order, and stripes in ascending order within each.
+    final int ordinal;
+    final BookingStore bookings;
+    final Map<String, RecurringBooking> series;
+    final Map<String, Set<RecurringBooking>> seriesByCustomer;
+    final Map<SmartRoom, Set<RecurringBooking>> seriesByRoom;
+    // A room's schedule for one date is only ever checked and changed while holding that (room, date) stripe,
+    // so bookings for different rooms or days proceed in parallel.
+    private final ReentrantLock[] locks;
+
+    BookingShard(int ordinal, BookingStore bookings) {
+        this.ordinal = ordinal;
+        this.bookings = bookings;
+        this.series = new ConcurrentHashMap<>();
+        this.seriesByCustomer = new ConcurrentHashMap<>();
+        this.seriesByRoom = new ConcurrentHashMap<>();
+        this.locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock lockFor(SmartRoom room, LocalDate date) {
+        return locks[stripeFor(room, date)];
+    }
+
+    List<ReentrantLock> locksFor(SmartRoom room, Collection<LocalDate> dates) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (LocalDate date : dates) {
+            stripes.add(stripeFor(room, date));
+        }
+        return locksFor(stripes);
+    }
+
+    List<ReentrantLock> allLocks() {
+        return List.of(locks);
+    }
+
+    List<ReentrantLock> locksFor(TreeSet<Integer> stripes) {
+        List<ReentrantLock> shardLocks = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            shardLocks.add(locks[stripe]);
+        }
+        return shardLocks;
+    }
+
+    void addSeriesToIndexes(RecurringBooking recurring) {
+        RecurringBooking previous = series.put(recurring.getSeriesId(), recurring);
+        if (previous != null) {
+            removeSeriesFromIndexes(previous);
+        }
+        seriesByCustomer.compute(recurring.getCustomer().getUserId(), (userId, userSeries) -> {
+            Set<RecurringBooking> set = userSeries == null ? ConcurrentHashMap.newKeySet() : userSeries;
+            set.add(recurring);
+            return set;
+        });
+        seriesByRoom.compute(recurring.getRoom(), (room, roomSeries) -> {
+            Set<RecurringBooking> set = roomSeries == null ? ConcurrentHashMap.newKeySet() : roomSeries;
+            set.add(recurring);
+            return set;
+        });
+    }
+
+    // The customer and room indexes; the series map itself is left to the caller.
+    void removeSeriesFromIndexes(RecurringBooking recurring) {
+        seriesByCustomer.computeIfPresent(recurring.getCustomer().getUserId(), (userId, userSeries) -> {
+            userSeries.remove(recurring);
+            return userSeries.isEmpty() ? null : userSeries;
+        });
+        seriesByRoom.computeIfPresent(recurring.getRoom(), (room, roomSeries) -> {
+            roomSeries.remove(recurring);
+            return roomSeries.isEmpty() ? null : roomSeries;
+        });
+    }
+
+    void clear() {
+        bookings.clear();
+        series.clear();
+        seriesByCustomer.clear();
+        seriesByRoom.clear();
+    }
+
+    static int stripeFor(SmartRoom room, LocalDate date) {
+        int h = System.identityHashCode(room) * 31 + date.hashCode();
+        h ^= (h >>> 16);
+        return h & (LOCK_STRIPES - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,429 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Binary image of users, branches, rooms and bookings. Strings are written once to a table and referred to by
+// index; dates are epoch days and times are minutes of the day. The snapshot remembers how far into the
+// booking journal it reaches so that only the journal tail needs replaying after it is loaded.
+// Passwords are written as PasswordHasher hashes; one still held as plaintext is hashed on the way out.
+// Rooms that have been removed are kept after each branch's rooms, with the day they were removed, so that their
+// past bookings still count in occupancy reports; they are restored as removed rooms, never offered for booking.
+// Each branch's schedule follows its rooms: the operating days as a bitmask (bit 0 for Monday), the opening and
+// closing minute of the day and the holidays.
+public class BookingSnapshot {
+    private static final int MAGIC = 0x53524253;
+    private static final int VERSION = 5;
+    // Version 1 snapshots have no recurring series section, versions before 3 no removed rooms, versions before 4
+    // no schedules, which leaves the branches with the default one, and versions before 5 no headcounts; all of
+    // them are still read.
+    private static final int OLDEST_READABLE_VERSION = 1;
+    private static final byte ROLE_ADMIN = 0;
+    private static final byte ROLE_CUSTOMER = 1;
+
+    private final Path path;
+
+    private List<User> users;
+    private List<Branch> branches;
+    private List<Entry> bookings;
+    private List<SeriesEntry> series;
+    private long journalOffset;
+    private long journalFingerprint;
+
+    public BookingSnapshot(String fileName) {
+        this.path = Paths.get(fileName);
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    public void write(Collection<User> allUsers, List<Branch> allBranches, List<Booking> allBookings,
+            List<RecurringBooking> allSeries, long offset, long fingerprint) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        // Removed rooms are numbered after the branch's current ones, the order they are written in.
+        List<List<SmartRoom>> currentRooms = new ArrayList<>();
+        List<List<SmartRoom>> removedRooms = new ArrayList<>();
+        Map<SmartRoom, int[]> roomRefs = new HashMap<>();
+        for (int b = 0; b < allBranches.size(); b++) {
+            currentRooms.add(allBranches.get(b).getRooms());
+            removedRooms.add(allBranches.get(b).getRemovedRooms());
+            List<SmartRoom> rooms = new ArrayList<>(currentRooms.get(b));
+            rooms.addAll(removedRooms.get(b));
+            for (int r = 0; r < rooms.size(); r++) {
+                roomRefs.put(rooms.get(r), new int[] { b, r });
+            }
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The body refers to strings by index, so it is built first and the string table written ahead of it.
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+            body.writeInt(allUsers.size());
+            for (User user : allUsers) {
+                body.writeInt(ref(strings, user.getUserId()));
+                body.writeInt(ref(strings, user.getName()));
+                body.writeByte(user instanceof Admin ? ROLE_ADMIN : ROLE_CUSTOMER);
+                String stored = user.getPassword();
+                body.writeInt(ref(strings, PasswordHasher.isHashed(stored) ? stored : PasswordHasher.hash(stored)));
+            }
+            body.writeInt(allBranches.size());
+            for (int b = 0; b < allBranches.size(); b++) {
+                Branch branch = allBranches.get(b);
+                body.writeInt(ref(strings, branch.getName()));
+                List<SmartRoom> rooms = currentRooms.get(b);
+                body.writeInt(rooms.size());
+                for (SmartRoom room : rooms) {
+                    body.writeInt(ref(strings, room.getRoomId()));
+                    body.writeInt(ref(strings, room.getType()));
+                    body.writeInt(room.getCapacity());
+                    body.writeShort(room.getSchedule().getSlotMinutes());
+                }
+                body.writeInt(removedRooms.get(b).size());
+                for (SmartRoom room : removedRooms.get(b)) {
+                    body.writeInt(ref(strings, room.getRoomId()));
+                    body.writeInt(ref(strings, room.getType()));
+                    body.writeInt(room.getCapacity());
+                    body.writeShort(room.getSchedule().getSlotMinutes());
+                    body.writeInt((int) branch.getRemovedOn(room).toEpochDay());
+                }
+                BranchSchedule schedule = branch.getSchedule();
+                int days = 0;
+                for (DayOfWeek day : schedule.getOperatingDays()) {
+                    days |= 1 << (day.getValue() - 1);
+                }
+                body.writeByte(days);
+                body.writeShort(schedule.getOpeningTime().toSecondOfDay() / 60);
+                body.writeShort(schedule.getClosingTime().toSecondOfDay() / 60);
+                Set<LocalDate> holidays = new TreeSet<>(schedule.getHolidays());
+                body.writeInt(holidays.size());
+                for (LocalDate date : holidays) {
+                    body.writeInt((int) date.toEpochDay());
+                }
+            }
+            List<Booking> written = new ArrayList<>();
+            for (Booking booking : allBookings) {
+                if (roomRefs.containsKey(booking.getRoom())) {
+                    written.add(booking);
+                }
+            }
+            body.writeInt(written.size());
+            for (Booking booking : written) {
+                int[] roomRef = roomRefs.get(booking.getRoom());
+                body.writeInt(encodeBookingId(strings, booking.getBookingId()));
+                body.writeInt(ref(strings, booking.getCustomer().getUserId()));
+                body.writeInt(roomRef[0]);
+                body.writeInt(roomRef[1]);
+                body.writeInt((int) booking.getDate().toEpochDay());
+                body.writeShort(booking.getTime().toSecondOfDay() / 60);
+                body.writeShort(RoomSchedule.endMinuteOfDay(booking.getTime(), booking.getEndTime()));
+                body.writeInt(booking.getHeadcount());
+            }
+            List<RecurringBooking> writtenSeries = new ArrayList<>();
+            for (RecurringBooking recurring : allSeries) {
+                if (roomRefs.containsKey(recurring.getRoom())) {
+                    writtenSeries.add(recurring);
+                }
+            }
+            body.writeInt(writtenSeries.size());
+            for (RecurringBooking recurring : writtenSeries) {
+                int[] roomRef = roomRefs.get(recurring.getRoom());
+                body.writeInt(ref(strings, recurring.getSeriesId()));
+                body.writeInt(ref(strings, recurring.getCustomer().getUserId()));
+                body.writeInt(roomRef[0]);
+                body.writeInt(roomRef[1]);
+                body.writeByte(recurring.getPattern().ordinal());
+                body.writeInt((int) recurring.getFirstDate().toEpochDay());
+                body.writeInt((int) recurring.getLastDate().toEpochDay());
+                body.writeShort(recurring.getStartTime().toSecondOfDay() / 60);
+                body.writeShort(RoomSchedule.endMinuteOfDay(recurring.getStartTime(), recurring.getEndTime()));
+                body.writeInt(recurring.getSkippedDates().size());
+                for (LocalDate skipped : recurring.getSkippedDates()) {
+                    body.writeInt((int) skipped.toEpochDay());
+                }
+            }
+            body.flush();
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(offset);
+            out.writeLong(fingerprint);
+            out.writeInt(strings.size());
+            for (String s : strings.keySet()) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            bodyBytes.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The file is read into a heap buffer rather than mapped: a mapping stays open until it is garbage collected,
+    // and on some platforms that keeps the next write() from replacing the file.
+    public void load() throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("Booking snapshot is too large to load: " + path);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a booking snapshot: " + path);
+            }
+            int version = buffer.getInt();
+            if (version < OLDEST_READABLE_VERSION || version > VERSION) {
+                throw new IOException("Unsupported booking snapshot version " + version + ": " + path);
+            }
+            journalOffset = buffer.getLong();
+            journalFingerprint = buffer.getLong();
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int userCount = buffer.getInt();
+            users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                String userId = strings[buffer.getInt()];
+                String name = strings[buffer.getInt()];
+                byte role = buffer.get();
+                String password = strings[buffer.getInt()];
+                users.add(role == ROLE_ADMIN ? new Admin(userId, name, password) : new Customer(userId, name, password));
+            }
+
+            int branchCount = buffer.getInt();
+            branches = new ArrayList<>(branchCount);
+            List<SmartRoom[]> roomsByBranch = new ArrayList<>(branchCount);
+            for (int i = 0; i < branchCount; i++) {
+                Branch branch = new Branch(strings[buffer.getInt()]);
+                List<SmartRoom> rooms = new ArrayList<>();
+                int roomCount = buffer.getInt();
+                for (int r = 0; r < roomCount; r++) {
+                    SmartRoom room = readRoom(buffer, strings);
+                    branch.addRoom(room);
+                    rooms.add(room);
+                }
+                int removedCount = version >= 3 ? buffer.getInt() : 0;
+                for (int r = 0; r < removedCount; r++) {
+                    SmartRoom room = readRoom(buffer, strings);
+                    branch.restoreRemovedRoom(room, LocalDate.ofEpochDay(buffer.getInt()));
+                    rooms.add(room);
+                }
+                if (version >= 4) {
+                    readSchedule(buffer, branch.getSchedule());
+                }
+                branches.add(branch);
+                roomsByBranch.add(rooms.toArray(new SmartRoom[0]));
+            }
+
+            int bookingCount = buffer.getInt();
+            bookings = new ArrayList<>(bookingCount);
+            for (int i = 0; i < bookingCount; i++) {
+                String bookingId = decodeBookingId(strings, buffer.getInt());
+                String customerId = strings[buffer.getInt()];
+                int branchIndex = buffer.getInt();
+                Branch branch = branches.get(branchIndex);
+                SmartRoom room = roomsByBranch.get(branchIndex)[buffer.getInt()];
+                LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+                LocalTime start = minuteToTime(buffer.getShort());
+                LocalTime end = minuteToTime(buffer.getShort());
+                int headcount = version >= 5 ? buffer.getInt() : 0;
+                bookings.add(new Entry(bookingId, customerId, branch, room, date, start, end, headcount));
+            }
+
+            int seriesCount = version >= 2 ? buffer.getInt() : 0;
+            series = new ArrayList<>(seriesCount);
+            for (int i = 0; i < seriesCount; i++) {
+                String seriesId = strings[buffer.getInt()];
+                String customerId = strings[buffer.getInt()];
+                int branchIndex = buffer.getInt();
+                Branch branch = branches.get(branchIndex);
+                SmartRoom room = roomsByBranch.get(branchIndex)[buffer.getInt()];
+                RecurringBooking.Pattern pattern = RecurringBooking.Pattern.values()[buffer.get()];
+                LocalDate firstDate = LocalDate.ofEpochDay(buffer.getInt());
+                LocalDate lastDate = LocalDate.ofEpochDay(buffer.getInt());
+                LocalTime start = minuteToTime(buffer.getShort());
+                LocalTime end = minuteToTime(buffer.getShort());
+                Set<LocalDate> skipped = new TreeSet<>();
+                int skippedCount = buffer.getInt();
+                for (int s = 0; s < skippedCount; s++) {
+                    skipped.add(LocalDate.ofEpochDay(buffer.getInt()));
+                }
+                series.add(new SeriesEntry(seriesId, customerId, branch, room, pattern, firstDate, lastDate, start, end, skipped));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt booking snapshot: " + path, e);
+        }
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public List<Branch> getBranches() {
+        return branches;
+    }
+
+    public List<Entry> getBookings() {
+        return bookings;
+    }
+
+    public List<SeriesEntry> getSeries() {
+        return series;
+    }
+
+    public long getJournalOffset() {
+        return journalOffset;
+    }
+
+    public long getJournalFingerprint() {
+        return journalFingerprint;
+    }
+
+    private static void readSchedule(ByteBuffer buffer, BranchSchedule schedule) {
+        int days = buffer.get();
+        Set<DayOfWeek> operatingDays = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if ((days & 1 << (day.getValue() - 1)) != 0) {
+                operatingDays.add(day);
+            }
+        }
+        LocalTime opening = LocalTime.ofSecondOfDay(buffer.getShort() * 60);
+        LocalTime closing = LocalTime.ofSecondOfDay(buffer.getShort() * 60);
+        List<LocalDate> holidays = new ArrayList<>();
+        int holidayCount = buffer.getInt();
+        for (int i = 0; i < holidayCount; i++) {
+            holidays.add(LocalDate.ofEpochDay(buffer.getInt()));
+        }
+        schedule.restore(operatingDays, opening, closing, holidays);
+    }
+
+    private static SmartRoom readRoom(ByteBuffer buffer, String[] strings) {
+        String roomId = strings[buffer.getInt()];
+        String type = strings[buffer.getInt()];
+        int capacity = buffer.getInt();
+        return new SmartRoom(roomId, type, capacity, buffer.getShort());
+    }
+
+    private static int ref(Map<String, Integer> strings, String s) {
+        Integer index = strings.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.put(s, index);
+        }
+        return index;
+    }
+
+    // Generated IDs ("BK" + number) are stored as the negated number so they cost nothing in the string table.
+    private static int encodeBookingId(Map<String, Integer> strings, String bookingId) {
+        if (bookingId.startsWith("BK") && bookingId.length() > 2) {
+            try {
+                int number = Integer.parseInt(bookingId.substring(2));
+                if (number >= 0 && Booking.formatId(number).equals(bookingId)) {
+                    return -number - 1;
+                }
+            } catch (NumberFormatException e) {
+            }
+        }
+        return ref(strings, bookingId);
+    }
+
+    private static String decodeBookingId(String[] strings, int ref) {
+        return ref < 0 ? Booking.formatId(-ref - 1) : strings[ref];
+    }
+
+    private static LocalTime minuteToTime(short minute) {
+        return minute >= RoomSchedule.MINUTES_PER_DAY ? LocalTime.MIDNIGHT : LocalTime.of(minute / 60, minute % 60);
+    }
+
+    // A booking as stored in the snapshot; the customer is resolved against the live user table when applied.
+    public static class Entry {
+        public final String bookingId;
+        public final String customerId;
+        public final Branch branch;
+        public final SmartRoom room;
+        public final LocalDate date;
+        public final LocalTime startTime;
+        public final LocalTime endTime;
+        public final int headcount;
+
+        Entry(String bookingId, String customerId, Branch branch, SmartRoom room, LocalDate date,
+                LocalTime startTime, LocalTime endTime, int headcount) {
+            this.bookingId = bookingId;
+            this.customerId = customerId;
+            this.branch = branch;
+            this.room = room;
+            this.date = date;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.headcount = headcount;
+        }
+    }
+
+    public static class SeriesEntry {
+        public final String seriesId;
+        public final String customerId;
+        public final Branch branch;
+        public final SmartRoom room;
+        public final RecurringBooking.Pattern pattern;
+        public final LocalDate firstDate;
+        public final LocalDate lastDate;
+        public final LocalTime startTime;
+        public final LocalTime endTime;
+        public final Set<LocalDate> skippedDates;
+
+        SeriesEntry(String seriesId, String customerId, Branch branch, SmartRoom room, RecurringBooking.Pattern pattern,
+                LocalDate firstDate, LocalDate lastDate, LocalTime startTime, LocalTime endTime, Set<LocalDate> skippedDates) {
+            this.seriesId = seriesId;
+            this.customerId = customerId;
+            this.branch = branch;
+            this.room = room;
+            this.pattern = pattern;
+            this.firstDate = firstDate;
+            this.lastDate = lastDate;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.skippedDates = skippedDates;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+import java.time.LocalDate;
+import java.util.List;
+
+// Where BookingManager keeps its bookings. Implementations must be safe for concurrent use; BookingManager
+// already serialises changes to any one (room, date), and lists are returned in no particular order.
+public interface BookingStore {
+    // Adds the booking, replacing and returning any booking already stored under the same ID.
+    Booking put(Booking booking);
+
+    Booking remove(String bookingId);
+
+    Booking get(String bookingId);
+
+    List<Booking> getByCustomer(String userId);
+
+    List<Booking> getByRoomAndDate(SmartRoom room, LocalDate date);
+
+    // Every booking of the room, on any date.
+    List<Booking> getByRoom(SmartRoom room);
+
+    // Every booking on the date, in any room.
+    List<Booking> getByDate(LocalDate date);
+
+    List<Booking> getAll();
+
+    // Bookings dated before the given day, e.g. to mark them completed or move them to the archive.
+    List<Booking> getDatedBefore(LocalDate date);
+
+    boolean setStatus(String bookingId, BookingStatus status);
+
+    int size();
+
+    void clear();
+}
\ No newline at end of file
@@ -2,10 +2,10 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 
 public class BookingValidator {
-    public static boolean isValidBookingTime(LocalTime time) {
-        LocalTime startTime = LocalTime.of(8, 0);
-        LocalTime endTime = LocalTime.of(20, 0);
-        return !time.isBefore(startTime) && !time.isAfter(endTime);
+    public static final int MAX_SERIES_DAYS = 366;
+
+    public static boolean isValidBookingTime(Branch branch, LocalDate date, LocalTime time) {
+        return branch.getSchedule().isValidBookingTime(date, time);
     }
 
     public static boolean isValidBookingDate(LocalDate date) {
@@ -16,7 +16,66 @@ public class BookingValidator {
         return room.getSchedule().isAvailable(date, time);
     }
 
+    public static boolean isRoomAvailable(SmartRoom room, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return room.getSchedule().isAvailable(date, startTime, endTime);
+    }
+
     public static boolean isValidCapacity(SmartRoom room, int requiredCapacity) {
         return room.getCapacity() >= requiredCapacity;
     }
+
+    // Returns why the request cannot be booked, or null if it is fine apart from room availability.
+    public static String validate(BookingRequest request) {
+        if (request.getCustomer() == null || request.getBranch() == null || request.getRoom() == null
+                || request.getDate() == null || request.getStartTime() == null || request.getEndTime() == null) {
+            return "incomplete request";
+        }
+        if (request.getBranch().getRoomById(request.getRoom().getRoomId()) != request.getRoom()) {
+            return "room does not belong to this branch";
+        }
+        if (request.getHeadcount() < 0) {
+            return "number of people cannot be negative";
+        }
+        if (!isValidCapacity(request.getRoom(), request.getHeadcount())) {
+            return "room seats only " + request.getRoom().getCapacity() + " people";
+        }
+        if (!isValidBookingDate(request.getDate())) {
+            return "date is in the past";
+        }
+        if (!RoomSchedule.isValidRange(request.getStartTime(), request.getEndTime())) {
+            return "end time must be after start time";
+        }
+        if (!request.getBranch().getSchedule().isValidBooking(request.getDate(), request.getStartTime(), request.getEndTime())) {
+            return "branch is closed at that time";
+        }
+        return null;
+    }
+
+    // Same checks for a series; individual dates the branch is closed on are skipped rather than rejected.
+    public static String validateSeries(Customer customer, Branch branch, SmartRoom room, LocalDate firstDate,
+            LocalDate lastDate, LocalTime startTime, LocalTime endTime) {
+        if (customer == null || branch == null || room == null || firstDate == null || lastDate == null
+                || startTime == null || endTime == null) {
+            return "incomplete request";
+        }
+        if (branch.getRoomById(room.getRoomId()) != room) {
+            return "room does not belong to this branch";
+        }
+        if (!isValidBookingDate(firstDate)) {
+            return "date is in the past";
+        }
+        if (lastDate.isBefore(firstDate)) {
+            return "series ends before it starts";
+        }
+        if (lastDate.isAfter(firstDate.plusDays(MAX_SERIES_DAYS))) {
+            return "series may not run for more than " + MAX_SERIES_DAYS + " days";
+        }
+        if (!RoomSchedule.isValidRange(startTime, endTime)) {
+            return "end time must be after start time";
+        }
+        if (!branch.getSchedule().isWithinOperatingHours(startTime, endTime)) {
+            return "branch is closed at that time";
+        }
+        return null;
+    }
 } 
\ No newline at end of file
@@ -2,36 +2,131 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ObjIntConsumer;
 import java.io.Serializable;
 
 public class Branch implements Serializable {
     private static final long serialVersionUID = 1L;
     private String name;
     private List<SmartRoom> rooms;
+    private AvailabilityIndex availabilityIndex;
+    private OccupancyIndex occupancyIndex;
+    private BranchSchedule schedule;
 
     public Branch(String name) {
         this.name = name;
-        this.rooms = new ArrayList<>();
+        this.rooms = new CopyOnWriteArrayList<>();
+        this.availabilityIndex = new AvailabilityIndex();
+        this.occupancyIndex = new OccupancyIndex();
+        this.schedule = new BranchSchedule();
     }
 
     public void addRoom(SmartRoom room) {
-        rooms.add(room);
+        addRoom(rooms.size(), room);
+    }
+
+    // Puts the room at the given place in the list, as when putting back a room whose removal was undone.
+    public void addRoom(int position, SmartRoom room) {
+        availabilityIndex.addRoom(room);
+        occupancyIndex.addRoom(room);
+        rooms.add(position, room);
     }
 
     public String getName() {
         return name;
     }
 
+    public BranchSchedule getSchedule() {
+        return schedule;
+    }
+
+    public List<SmartRoom> getRooms() {
+        return new ArrayList<>(rooms);
+    }
+
     public List<SmartRoom> getAvailableRooms(String type, LocalDate date, LocalTime time) {
-        List<SmartRoom> availableRooms = new ArrayList<>();
-        for (SmartRoom room : rooms) {
-            if (room.getType().equals(type) && room.getSchedule().isAvailable(date, time)) {
-                availableRooms.add(room);
-            }
-        }
+        return getAvailableRooms(type, date, time, RoomSchedule.defaultEndTime(time));
+    }
+
+    public List<SmartRoom> getAvailableRooms(String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        long started = System.nanoTime();
+        List<SmartRoom> availableRooms = availabilityIndex.getAvailableRooms(type, date, startTime, endTime);
+        BookingMetrics.GET_AVAILABLE_ROOMS.recordSince(started);
         return availableRooms;
     }
 
+    // Smallest free room that seats headcount people, of the given type or (type null) of any type; null if none.
+    public SmartRoom findBestFitRoom(String type, int headcount, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return availabilityIndex.findBestFit(type, headcount, date, startTime, endTime);
+    }
+
+    public void findFirstFreeStarts(String type, int minCapacity, LocalDate date, int fromMinute, int toMinute,
+            int durationMinutes, ObjIntConsumer<SmartRoom> consumer) {
+        availabilityIndex.findFirstFreeStarts(type, minCapacity, date, fromMinute, toMinute, durationMinutes, consumer);
+    }
+
+    public long getAvailabilityVersion(String type, LocalDate date) {
+        return availabilityIndex.version(type, date);
+    }
+
+    // Minutes booked in each hour of the day for the room, or null when nothing is booked that day.
+    public byte[] getBookedMinutesByHour(SmartRoom room, LocalDate date) {
+        return occupancyIndex.getBookedMinutesByHour(room, date);
+    }
+
+    // The rooms occupancy reports cover: the current ones, then removed ones that still have counters.
+    public List<SmartRoom> getReportedRooms() {
+        List<SmartRoom> reported = getRooms();
+        reported.addAll(occupancyIndex.getRemovedRooms());
+        return reported;
+    }
+
+    // Rooms that have been removed but still have counters, in the order they were removed.
+    public List<SmartRoom> getRemovedRooms() {
+        return occupancyIndex.getRemovedRooms();
+    }
+
+    // The date a removed room was removed on, or null for a room in use.
+    public LocalDate getRemovedOn(SmartRoom room) {
+        return occupancyIndex.getRemovedOn(room);
+    }
+
+    // Brings back, for occupancy reports only, a room that was removed before a restart.
+    public void restoreRemovedRoom(SmartRoom room, LocalDate removedOn) {
+        occupancyIndex.addRemovedRoom(room, removedOn);
+    }
+
+    // Whether the room was part of the branch on the date; a removed room counts up to the day it was removed.
+    public boolean hadRoomOn(SmartRoom room, LocalDate date) {
+        LocalDate removedOn = occupancyIndex.getRemovedOn(room);
+        return removedOn == null || !date.isAfter(removedOn);
+    }
+
+    // Freezes the occupancy counters of days before the date, whose bookings have been archived.
+    public void sealOccupancyBefore(LocalDate date) {
+        occupancyIndex.sealBefore(date);
+    }
+
+    // Counts an archived booking of the room with the ID, looking among the removed rooms first for one that was
+    // still in use on the date. Returns false when the branch knows no such room.
+    public boolean addArchivedOccupancy(String roomId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        SmartRoom room = occupancyIndex.getRemovedRoom(roomId, date);
+        if (room == null) {
+            room = getRoomById(roomId);
+        }
+        if (room == null) {
+            return false;
+        }
+        occupancyIndex.addSealedBooking(room, date, startTime.toSecondOfDay() / 60,
+                RoomSchedule.endMinuteOfDay(startTime, endTime));
+        return true;
+    }
+
+    public int countAvailableRooms(String type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return availabilityIndex.countAvailableRooms(type, date, startTime, endTime);
+    }
+
     public SmartRoom getRoomById(String id) {
         for (SmartRoom room : rooms) {
             if (room.getRoomId().equals(id)) {
@@ -44,7 +139,9 @@ public class Branch implements Serializable {
     public boolean deleteRoom(String roomId) {
         for (int i = 0; i < rooms.size(); i++) {
             if (rooms.get(i).getRoomId().equals(roomId)) {
-                rooms.remove(i);
+                SmartRoom room = rooms.remove(i);
+                availabilityIndex.removeRoom(room);
+                occupancyIndex.removeRoom(room);
                 return true;
             }
         }
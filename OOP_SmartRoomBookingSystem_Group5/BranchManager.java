@@ -12,16 +12,6 @@ public class BranchManager {
         branches.add(branch);
     }
 
-    public boolean deleteBranch(String branchName) {
-        for (int i = 0; i < branches.size(); i++) {
-            if (branches.get(i).getName().equals(branchName)) {
-                branches.remove(i);
-                return true;
-            }
-        }
-        return false;
-    }
-
     public Branch getBranchByName(String branchName) {
         for (Branch branch : branches) {
             if (branch.getName().equals(branchName)) {
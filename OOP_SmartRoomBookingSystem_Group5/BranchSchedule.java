@@ -1,17 +1,31 @@
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.io.Serializable;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
-public class BranchSchedule {
+// Operating days, hours and holidays of a branch. They are compiled into a calendar holding one bit per slot of
+// the day that the branch is open, for every date from a month back to HORIZON_DAYS ahead, so checking a booking
+// against the schedule is a mask test on the day's words. Changing the days or hours recompiles the calendar;
+// adding or removing holidays recompiles only those dates. Dates outside the horizon are checked against the
+// rules directly.
+public class BranchSchedule implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int HORIZON_DAYS = 400;
+    private static final int LOOKBACK_DAYS = 31;
+
     private Set<DayOfWeek> operatingDays;
     private LocalTime openingTime;
     private LocalTime closingTime;
     private Set<LocalDate> holidays;
+    // Replaced wholesale on every change, so readers never see a half-compiled calendar. Null until first used.
+    private transient volatile Calendar calendar;
 
-    public BranchSchedule() { 
+    public BranchSchedule() {
         this.operatingDays = EnumSet.of(
             DayOfWeek.MONDAY,
             DayOfWeek.TUESDAY,
@@ -24,36 +38,129 @@ public class BranchSchedule {
         this.holidays = new HashSet<>();
     }
 
-    public void setOperatingDays(Set<DayOfWeek> days) {
+    public synchronized void setOperatingDays(Set<DayOfWeek> days) {
         this.operatingDays = new HashSet<>(days);
+        calendar = null;
+    }
+
+    public synchronized void setOperatingHours(LocalTime opening, LocalTime closing) {
+        this.openingTime = opening;
+        this.closingTime = closing;
+        calendar = null;
     }
 
-    public void setOperatingHours(LocalTime opening, LocalTime closing) {
+    // Replaces the whole schedule, as read back from the journal or a snapshot.
+    public synchronized void restore(Set<DayOfWeek> days, LocalTime opening, LocalTime closing,
+            Collection<LocalDate> holidays) {
+        this.operatingDays = new HashSet<>(days);
         this.openingTime = opening;
         this.closingTime = closing;
+        this.holidays = new HashSet<>(holidays);
+        calendar = null;
     }
 
     public void addHoliday(LocalDate date) {
-        holidays.add(date);
+        addHolidays(List.of(date));
     }
 
     public void removeHoliday(LocalDate date) {
-        holidays.remove(date);
+        removeHolidays(List.of(date));
+    }
+
+    public synchronized void addHolidays(Collection<LocalDate> dates) {
+        holidays.addAll(dates);
+        recompile(dates);
+    }
+
+    public synchronized void removeHolidays(Collection<LocalDate> dates) {
+        holidays.removeAll(dates);
+        recompile(dates);
     }
 
     public boolean isOperatingDay(LocalDate date) {
-        return operatingDays.contains(date.getDayOfWeek()) && !holidays.contains(date);
+        Calendar current = calendar(date);
+        int day = current.indexOf(date);
+        if (day < 0) {
+            return isOpenDay(date) && openMinute() < closeMinute();
+        }
+        for (int word = 0; word < current.words; word++) {
+            if (current.open[day * current.words + word] != 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean isWithinOperatingHours(LocalTime time) {
         return !time.isBefore(openingTime) && !time.isAfter(closingTime);
     }
 
+    // Whether [startTime, endTime) lies within the opening hours, whatever the day.
+    public boolean isWithinOperatingHours(LocalTime startTime, LocalTime endTime) {
+        return RoomSchedule.isValidRange(startTime, endTime) && startTime.toSecondOfDay() / 60 >= openMinute()
+                && RoomSchedule.endMinuteOfDay(startTime, endTime) <= closeMinute();
+    }
+
     public boolean isValidBookingTime(LocalDate date, LocalTime time) {
         return isOperatingDay(date) && isWithinOperatingHours(time);
     }
 
-    public Set<DayOfWeek> getOperatingDays() {
+    // A closing time of midnight keeps the branch open to the end of the day.
+    public boolean isValidBooking(LocalDate date, LocalTime startTime, LocalTime endTime) {
+        if (!RoomSchedule.isValidRange(startTime, endTime)) {
+            return false;
+        }
+        int startMinute = startTime.toSecondOfDay() / 60;
+        int endMinute = RoomSchedule.endMinuteOfDay(startTime, endTime);
+        Calendar current = calendar(date);
+        int day = current.indexOf(date);
+        if (day < 0) {
+            return isOpenDay(date) && isWithinOperatingHours(startTime, endTime);
+        }
+        int from = startMinute / current.slotMinutes;
+        int to = (endMinute + current.slotMinutes - 1) / current.slotMinutes;
+        for (int word = from >>> 6; word <= (to - 1) >>> 6; word++) {
+            long mask = RoomSchedule.rangeMask(word, from, to);
+            if ((current.open[day * current.words + word] & mask) != mask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Minute of the day the branch opens on the date, or -1 when it is closed all day.
+    public int getOpeningMinute(LocalDate date) {
+        Calendar current = calendar(date);
+        int day = current.indexOf(date);
+        if (day < 0) {
+            return isOpenDay(date) && openMinute() < closeMinute() ? openMinute() : -1;
+        }
+        for (int word = 0; word < current.words; word++) {
+            long bits = current.open[day * current.words + word];
+            if (bits != 0) {
+                return ((word << 6) + Long.numberOfTrailingZeros(bits)) * current.slotMinutes;
+            }
+        }
+        return -1;
+    }
+
+    // Minute of the day the branch closes on the date (1440 for midnight), or -1 when it is closed all day.
+    public int getClosingMinute(LocalDate date) {
+        Calendar current = calendar(date);
+        int day = current.indexOf(date);
+        if (day < 0) {
+            return isOpenDay(date) && openMinute() < closeMinute() ? closeMinute() : -1;
+        }
+        for (int word = current.words - 1; word >= 0; word--) {
+            long bits = current.open[day * current.words + word];
+            if (bits != 0) {
+                return ((word << 6) + 64 - Long.numberOfLeadingZeros(bits)) * current.slotMinutes;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized Set<DayOfWeek> getOperatingDays() {
         return new HashSet<>(operatingDays);
     }
 
@@ -65,7 +172,103 @@ public class BranchSchedule {
         return closingTime;
     }
 
-    public Set<LocalDate> getHolidays() {
+    public synchronized Set<LocalDate> getHolidays() {
         return new HashSet<>(holidays);
     }
-} 
\ No newline at end of file
+
+    // The compiled calendar, built on first use. It rolls forward once a date past its end is asked about on a
+    // later day than it was built.
+    private Calendar calendar(LocalDate date) {
+        Calendar current = calendar;
+        if (current != null && (current.indexOf(date) >= 0 || date.toEpochDay() < current.firstDay)) {
+            return current;
+        }
+        synchronized (this) {
+            long firstDay = LocalDate.now().toEpochDay() - LOOKBACK_DAYS;
+            if (calendar == null || calendar.firstDay != firstDay) {
+                calendar = compile(firstDay);
+            }
+            return calendar;
+        }
+    }
+
+    private Calendar compile(long firstDay) {
+        int openMinute = openMinute();
+        int closeMinute = closeMinute();
+        // Slots as long as possible while the opening and closing times still fall on slot boundaries.
+        int slotMinutes = gcd(gcd(RoomSchedule.DEFAULT_SLOT_MINUTES, openMinute), closeMinute);
+        int slotsPerDay = RoomSchedule.MINUTES_PER_DAY / slotMinutes;
+        long[] hours = new long[(slotsPerDay + 63) >>> 6];
+        for (int word = 0; openMinute < closeMinute && word < hours.length; word++) {
+            hours[word] = RoomSchedule.rangeMask(word, openMinute / slotMinutes, closeMinute / slotMinutes);
+        }
+        Calendar compiled = new Calendar(firstDay, slotMinutes, hours,
+                new long[(LOOKBACK_DAYS + HORIZON_DAYS) * hours.length]);
+        for (int day = 0; day < LOOKBACK_DAYS + HORIZON_DAYS; day++) {
+            compileDay(compiled, compiled.open, day);
+        }
+        return compiled;
+    }
+
+    private void recompile(Collection<LocalDate> dates) {
+        Calendar current = calendar;
+        if (current == null) {
+            return;
+        }
+        long[] open = current.open.clone();
+        for (LocalDate date : dates) {
+            int day = current.indexOf(date);
+            if (day >= 0) {
+                compileDay(current, open, day);
+            }
+        }
+        calendar = new Calendar(current.firstDay, current.slotMinutes, current.hours, open);
+    }
+
+    private void compileDay(Calendar target, long[] open, int day) {
+        boolean isOpen = isOpenDay(LocalDate.ofEpochDay(target.firstDay + day));
+        for (int word = 0; word < target.words; word++) {
+            open[day * target.words + word] = isOpen ? target.hours[word] : 0L;
+        }
+    }
+
+    // Also reached without the calendar for dates outside the horizon, so it takes the lock the setters hold.
+    private synchronized boolean isOpenDay(LocalDate date) {
+        return operatingDays.contains(date.getDayOfWeek()) && !holidays.contains(date);
+    }
+
+    private int openMinute() {
+        return openingTime.toSecondOfDay() / 60;
+    }
+
+    private int closeMinute() {
+        return closingTime.equals(LocalTime.MIDNIGHT) ? RoomSchedule.MINUTES_PER_DAY : closingTime.toSecondOfDay() / 60;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static final class Calendar {
+        final long firstDay;
+        final int slotMinutes;
+        final int words;
+        // Open slots of an operating day that is not a holiday.
+        final long[] hours;
+        // words longs per date, starting at firstDay.
+        final long[] open;
+
+        Calendar(long firstDay, int slotMinutes, long[] hours, long[] open) {
+            this.firstDay = firstDay;
+            this.slotMinutes = slotMinutes;
+            this.words = hours.length;
+            this.hours = hours;
+            this.open = open;
+        }
+
+        int indexOf(LocalDate date) {
+            long day = date.toEpochDay() - firstDay;
+            return day >= 0 && day < open.length / words ? (int) day : -1;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,478 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Struct-of-arrays booking store for very large histories. A booking is a row across primitive columns: a long ID,
+// int handles for customer, branch and room, an epoch day, start/end minutes, a headcount and a status byte. The
+// per-customer, per-room, per-day and per-(room, day) indexes are doubly linked lists threaded through further int
+// columns, so a booking costs a few dozen bytes and no objects. Booking objects are only built, as short-lived
+// views sharing the customer, branch and room objects, when a caller asks for one. Times are kept to the minute.
+public class ColumnarBookingStore implements BookingStore, Serializable {
+    private static final long serialVersionUID = 1L;
+    // End-of-list marker; the same value the hash maps return for a missing key.
+    private static final int NONE = LongIntHashMap.MISSING;
+    private static final long FREE_ROW = Long.MIN_VALUE;
+    private static final int INITIAL_ROWS = 1024;
+    private static final BookingStatus[] STATUSES = BookingStatus.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Customer> customers = new ArrayList<>();
+    private final Map<String, Integer> customerHandles = new HashMap<>();
+    private final List<Branch> branches = new ArrayList<>();
+    private final Map<Branch, Integer> branchHandles = new IdentityHashMap<>();
+    private final List<SmartRoom> rooms = new ArrayList<>();
+    private final Map<SmartRoom, Integer> roomHandles = new IdentityHashMap<>();
+    // Generated IDs ("BK" + number) are stored as the number; anything else gets a negative code into this list.
+    private final List<String> irregularIds = new ArrayList<>();
+    private final Map<String, Long> irregularCodes = new HashMap<>();
+
+    private long[] ids = new long[INITIAL_ROWS];
+    private int[] customerOf = new int[INITIAL_ROWS];
+    private int[] branchOf = new int[INITIAL_ROWS];
+    private int[] roomOf = new int[INITIAL_ROWS];
+    private int[] dayOf = new int[INITIAL_ROWS];
+    private short[] startOf = new short[INITIAL_ROWS];
+    private short[] endOf = new short[INITIAL_ROWS];
+    private int[] headcountOf = new int[INITIAL_ROWS];
+    private byte[] statusOf = new byte[INITIAL_ROWS];
+    // nextByCustomer doubles as the free-row list for rows that are not in use.
+    private int[] nextByCustomer = new int[INITIAL_ROWS];
+    private int[] prevByCustomer = new int[INITIAL_ROWS];
+    private int[] nextByRoomDay = new int[INITIAL_ROWS];
+    private int[] prevByRoomDay = new int[INITIAL_ROWS];
+    private int[] nextByRoom = new int[INITIAL_ROWS];
+    private int[] prevByRoom = new int[INITIAL_ROWS];
+    private int[] nextByDay = new int[INITIAL_ROWS];
+    private int[] prevByDay = new int[INITIAL_ROWS];
+    private int[] customerHead = newHeads(16);
+    private int[] roomHead = newHeads(16);
+
+    private final LongIntHashMap rowById = new LongIntHashMap();
+    private final LongIntHashMap roomDayHead = new LongIntHashMap();
+    private final LongIntHashMap dayHead = new LongIntHashMap();
+    private int usedRows;
+    private int freeRow = NONE;
+    private int size;
+
+    @Override
+    public Booking put(Booking booking) {
+        lock.writeLock().lock();
+        try {
+            long id = idCode(booking.getBookingId(), true);
+            int existing = rowById.get(id);
+            Booking previous = null;
+            if (existing != NONE) {
+                previous = view(existing);
+                removeRow(existing);
+            }
+
+            int row = allocateRow();
+            int customer = customerHandle(booking.getCustomer());
+            int room = roomHandle(booking.getRoom());
+            ids[row] = id;
+            customerOf[row] = customer;
+            branchOf[row] = handle(branches, branchHandles, booking.getBranch());
+            roomOf[row] = room;
+            dayOf[row] = (int) booking.getDate().toEpochDay();
+            startOf[row] = (short) (booking.getTime().toSecondOfDay() / 60);
+            endOf[row] = (short) RoomSchedule.endMinuteOfDay(booking.getTime(), booking.getEndTime());
+            headcountOf[row] = booking.getHeadcount();
+            statusOf[row] = (byte) booking.getStatus().ordinal();
+
+            prevByCustomer[row] = NONE;
+            nextByCustomer[row] = customerHead[customer];
+            if (customerHead[customer] != NONE) {
+                prevByCustomer[customerHead[customer]] = row;
+            }
+            customerHead[customer] = row;
+
+            long roomDay = roomDayKey(room, dayOf[row]);
+            int head = roomDayHead.get(roomDay);
+            prevByRoomDay[row] = NONE;
+            nextByRoomDay[row] = head;
+            if (head != NONE) {
+                prevByRoomDay[head] = row;
+            }
+            roomDayHead.put(roomDay, row);
+
+            prevByRoom[row] = NONE;
+            nextByRoom[row] = roomHead[room];
+            if (roomHead[room] != NONE) {
+                prevByRoom[roomHead[room]] = row;
+            }
+            roomHead[room] = row;
+
+            int dayFirst = dayHead.get(dayOf[row]);
+            prevByDay[row] = NONE;
+            nextByDay[row] = dayFirst;
+            if (dayFirst != NONE) {
+                prevByDay[dayFirst] = row;
+            }
+            dayHead.put(dayOf[row], row);
+
+            rowById.put(id, row);
+            size++;
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Booking remove(String bookingId) {
+        lock.writeLock().lock();
+        try {
+            long id = idCode(bookingId, false);
+            int row = id == FREE_ROW ? NONE : rowById.get(id);
+            if (row == NONE) {
+                return null;
+            }
+            Booking booking = view(row);
+            removeRow(row);
+            return booking;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Booking get(String bookingId) {
+        lock.readLock().lock();
+        try {
+            long id = idCode(bookingId, false);
+            int row = id == FREE_ROW ? NONE : rowById.get(id);
+            return row == NONE ? null : view(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Booking> getByCustomer(String userId) {
+        lock.readLock().lock();
+        try {
+            List<Booking> result = new ArrayList<>();
+            Integer customer = customerHandles.get(userId);
+            if (customer != null) {
+                for (int row = customerHead[customer]; row != NONE; row = nextByCustomer[row]) {
+                    result.add(view(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Booking> getByRoomAndDate(SmartRoom room, LocalDate date) {
+        lock.readLock().lock();
+        try {
+            List<Booking> result = new ArrayList<>();
+            Integer handle = roomHandles.get(room);
+            if (handle != null) {
+                int head = roomDayHead.get(roomDayKey(handle, (int) date.toEpochDay()));
+                for (int row = head; row != NONE; row = nextByRoomDay[row]) {
+                    result.add(view(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Booking> getByRoom(SmartRoom room) {
+        lock.readLock().lock();
+        try {
+            List<Booking> result = new ArrayList<>();
+            Integer handle = roomHandles.get(room);
+            if (handle != null) {
+                for (int row = roomHead[handle]; row != NONE; row = nextByRoom[row]) {
+                    result.add(view(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Booking> getByDate(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            List<Booking> result = new ArrayList<>();
+            for (int row = dayHead.get(date.toEpochDay()); row != NONE; row = nextByDay[row]) {
+                result.add(view(row));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Booking> getAll() {
+        lock.readLock().lock();
+        try {
+            List<Booking> result = new ArrayList<>(size);
+            for (int row = 0; row < usedRows; row++) {
+                if (ids[row] != FREE_ROW) {
+                    result.add(view(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Booking> getDatedBefore(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            int day = (int) date.toEpochDay();
+            List<Booking> result = new ArrayList<>();
+            for (int row = 0; row < usedRows; row++) {
+                if (ids[row] != FREE_ROW && dayOf[row] < day) {
+                    result.add(view(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean setStatus(String bookingId, BookingStatus status) {
+        lock.writeLock().lock();
+        try {
+            long id = idCode(bookingId, false);
+            int row = id == FREE_ROW ? NONE : rowById.get(id);
+            if (row == NONE) {
+                return false;
+            }
+            statusOf[row] = (byte) status.ordinal();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowById.clear();
+            roomDayHead.clear();
+            dayHead.clear();
+            // With no rows left nothing refers to a handle or an irregular ID code, so they start over too.
+            customers.clear();
+            customerHandles.clear();
+            branches.clear();
+            branchHandles.clear();
+            rooms.clear();
+            roomHandles.clear();
+            irregularIds.clear();
+            irregularCodes.clear();
+            customerHead = newHeads(16);
+            roomHead = newHeads(16);
+            usedRows = 0;
+            freeRow = NONE;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Booking view(int row) {
+        Booking booking = new Booking(idString(ids[row]), customers.get(customerOf[row]), branches.get(branchOf[row]),
+                rooms.get(roomOf[row]), LocalDate.ofEpochDay(dayOf[row]), minuteToTime(startOf[row]),
+                minuteToTime(endOf[row]), STATUSES[statusOf[row]]);
+        booking.setHeadcount(headcountOf[row]);
+        return booking;
+    }
+
+    private void removeRow(int row) {
+        int customer = customerOf[row];
+        if (prevByCustomer[row] == NONE) {
+            customerHead[customer] = nextByCustomer[row];
+        } else {
+            nextByCustomer[prevByCustomer[row]] = nextByCustomer[row];
+        }
+        if (nextByCustomer[row] != NONE) {
+            prevByCustomer[nextByCustomer[row]] = prevByCustomer[row];
+        }
+
+        long roomDay = roomDayKey(roomOf[row], dayOf[row]);
+        if (prevByRoomDay[row] == NONE) {
+            if (nextByRoomDay[row] == NONE) {
+                roomDayHead.remove(roomDay);
+            } else {
+                roomDayHead.put(roomDay, nextByRoomDay[row]);
+            }
+        } else {
+            nextByRoomDay[prevByRoomDay[row]] = nextByRoomDay[row];
+        }
+        if (nextByRoomDay[row] != NONE) {
+            prevByRoomDay[nextByRoomDay[row]] = prevByRoomDay[row];
+        }
+
+        if (prevByRoom[row] == NONE) {
+            roomHead[roomOf[row]] = nextByRoom[row];
+        } else {
+            nextByRoom[prevByRoom[row]] = nextByRoom[row];
+        }
+        if (nextByRoom[row] != NONE) {
+            prevByRoom[nextByRoom[row]] = prevByRoom[row];
+        }
+
+        if (prevByDay[row] == NONE) {
+            if (nextByDay[row] == NONE) {
+                dayHead.remove(dayOf[row]);
+            } else {
+                dayHead.put(dayOf[row], nextByDay[row]);
+            }
+        } else {
+            nextByDay[prevByDay[row]] = nextByDay[row];
+        }
+        if (nextByDay[row] != NONE) {
+            prevByDay[nextByDay[row]] = prevByDay[row];
+        }
+
+        rowById.remove(ids[row]);
+        ids[row] = FREE_ROW;
+        nextByCustomer[row] = freeRow;
+        freeRow = row;
+        size--;
+    }
+
+    private int allocateRow() {
+        if (freeRow != NONE) {
+            int row = freeRow;
+            freeRow = nextByCustomer[row];
+            return row;
+        }
+        if (usedRows == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            customerOf = Arrays.copyOf(customerOf, capacity);
+            branchOf = Arrays.copyOf(branchOf, capacity);
+            roomOf = Arrays.copyOf(roomOf, capacity);
+            dayOf = Arrays.copyOf(dayOf, capacity);
+            startOf = Arrays.copyOf(startOf, capacity);
+            endOf = Arrays.copyOf(endOf, capacity);
+            headcountOf = Arrays.copyOf(headcountOf, capacity);
+            statusOf = Arrays.copyOf(statusOf, capacity);
+            nextByCustomer = Arrays.copyOf(nextByCustomer, capacity);
+            prevByCustomer = Arrays.copyOf(prevByCustomer, capacity);
+            nextByRoomDay = Arrays.copyOf(nextByRoomDay, capacity);
+            prevByRoomDay = Arrays.copyOf(prevByRoomDay, capacity);
+            nextByRoom = Arrays.copyOf(nextByRoom, capacity);
+            prevByRoom = Arrays.copyOf(prevByRoom, capacity);
+            nextByDay = Arrays.copyOf(nextByDay, capacity);
+            prevByDay = Arrays.copyOf(prevByDay, capacity);
+        }
+        return usedRows++;
+    }
+
+    // The latest Customer object seen for an ID is the one views are built with.
+    private int customerHandle(Customer customer) {
+        Integer handle = customerHandles.get(customer.getUserId());
+        if (handle != null) {
+            customers.set(handle, customer);
+            return handle;
+        }
+        handle = customers.size();
+        customers.add(customer);
+        customerHandles.put(customer.getUserId(), handle);
+        if (handle == customerHead.length) {
+            int[] grown = newHeads(customerHead.length * 2);
+            System.arraycopy(customerHead, 0, grown, 0, customerHead.length);
+            customerHead = grown;
+        }
+        return handle;
+    }
+
+    private int roomHandle(SmartRoom room) {
+        int handle = handle(rooms, roomHandles, room);
+        if (handle == roomHead.length) {
+            int[] grown = newHeads(roomHead.length * 2);
+            System.arraycopy(roomHead, 0, grown, 0, roomHead.length);
+            roomHead = grown;
+        }
+        return handle;
+    }
+
+    private static int[] newHeads(int length) {
+        int[] heads = new int[length];
+        Arrays.fill(heads, NONE);
+        return heads;
+    }
+
+    private static <T> int handle(List<T> values, Map<T, Integer> handles, T value) {
+        Integer handle = handles.get(value);
+        if (handle == null) {
+            handle = values.size();
+            values.add(value);
+            handles.put(value, handle);
+        }
+        return handle;
+    }
+
+    // Returns FREE_ROW for an irregular ID that has never been stored when create is false.
+    private long idCode(String bookingId, boolean create) {
+        if (bookingId.startsWith("BK") && bookingId.length() > 2 && bookingId.length() <= 11) {
+            try {
+                int number = Integer.parseInt(bookingId.substring(2));
+                if (number >= 0 && Booking.formatId(number).equals(bookingId)) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+            }
+        }
+        Long code = irregularCodes.get(bookingId);
+        if (code == null) {
+            if (!create) {
+                return FREE_ROW;
+            }
+            code = -(long) irregularIds.size() - 1;
+            irregularIds.add(bookingId);
+            irregularCodes.put(bookingId, code);
+        }
+        return code;
+    }
+
+    private String idString(long id) {
+        return id >= 0 ? Booking.formatId((int) id) : irregularIds.get((int) (-id - 1));
+    }
+
+    private static long roomDayKey(int room, int epochDay) {
+        return ((long) room << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    private static LocalTime minuteToTime(short minute) {
+        return minute >= RoomSchedule.MINUTES_PER_DAY ? LocalTime.MIDNIGHT : LocalTime.of(minute / 60, minute % 60);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Event bus consumer that keeps the booking journal in step with the BookingManager using group commits. The bus
+// thread only formats records; a writer thread of its own gathers them into commit windows that close after
+// maxBatchRecords records or maxDelayMillis, whichever comes first, appends each window with one sequential write
+// and forces it to disk once. Everyone who booked during a window shares that force, so durable throughput is
+// limited by how fast the disk writes rather than by how many fsyncs it can do.
+// whenDurable() hands out futures that complete once a change is on disk. A failed commit fails the futures
+// waiting on it and is retried with a growing pause; records are never dropped. While the disk keeps failing the
+// backlog fills up, and with it the event bus, which eventually holds producers back.
+// A run of events published together with publishAll is held back until its last event arrives, so the whole run
+// lands in one commit window.
+public class GroupCommitWriter implements BookingEventHandler {
+    private static final long INITIAL_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5_000;
+    private static final int MAX_PENDING_WINDOWS = 4;
+
+    private final BookingJournal bookingJournal;
+    private final BookingEventBus eventBus;
+    private final int maxBatchRecords;
+    private final long maxDelayNanos;
+    private final Object lock = new Object();
+    // Guarded by lock: records handed over by the bus but not yet taken by the writer, the bus sequence of the
+    // last of them, and the callers waiting for sequences to become durable.
+    private List<String> pending = new ArrayList<>();
+    private long pendingSequence = -1;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(w -> w.sequence));
+    private volatile long durableSequence = -1;
+    // Records of a publishAll run whose last event has not arrived yet; only touched by the bus thread.
+    private final List<String> staged = new ArrayList<>();
+    private Thread writer;
+
+    public GroupCommitWriter(BookingJournal bookingJournal, BookingEventBus eventBus, int maxBatchRecords,
+            long maxDelayMillis) {
+        if (maxBatchRecords <= 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Commit windows need at least one record and a delay of 0 ms or more.");
+        }
+        this.bookingJournal = bookingJournal;
+        this.eventBus = eventBus;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(this::run, "booking-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Completes once every change published to the bus so far, including the calling thread's own, is on disk.
+    public CompletableFuture<Void> whenDurable() {
+        return whenDurable(eventBus.getCursor());
+    }
+
+    public CompletableFuture<Void> whenDurable(long sequence) {
+        if (sequence <= durableSequence) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Waiter waiter = new Waiter(sequence);
+        synchronized (lock) {
+            if (sequence <= durableSequence) {
+                return CompletableFuture.completedFuture(null);
+            }
+            waiters.add(waiter);
+        }
+        return waiter.future;
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    // Nothing is kept from a call that throws, so the bus can hand the same event over again.
+    @Override
+    public void onEvent(BookingEvent event, long sequence, boolean endOfBatch) throws InterruptedException {
+        String record = format(event);
+        if (event.isContinued()) {
+            staged.add(record);
+            return;
+        }
+        synchronized (lock) {
+            while (pending.size() >= MAX_PENDING_WINDOWS * maxBatchRecords) {
+                lock.wait();
+            }
+            int before = pending.size();
+            pending.addAll(staged);
+            pending.add(record);
+            pendingSequence = sequence;
+            if (before == 0 || (before < maxBatchRecords && pending.size() >= maxBatchRecords)) {
+                lock.notifyAll();
+            }
+        }
+        staged.clear();
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>();
+        long batchSequence = -1;
+        boolean written = false;
+        long pause = INITIAL_RETRY_MILLIS;
+        try {
+            while (true) {
+                if (batch.isEmpty()) {
+                    synchronized (lock) {
+                        while (pending.isEmpty()) {
+                            lock.wait();
+                        }
+                        // The window opens with its first record and stays open for more until it is full or due.
+                        long deadline = System.nanoTime() + maxDelayNanos;
+                        long remaining;
+                        while (pending.size() < maxBatchRecords && (remaining = deadline - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                        }
+                        List<String> taken = pending;
+                        pending = batch;
+                        batch = taken;
+                        batchSequence = pendingSequence;
+                        lock.notifyAll();
+                    }
+                }
+                // A failed append leaves the journal as it was, so the whole batch is appended again; once it is in,
+                // only the force is retried.
+                try {
+                    if (!written) {
+                        bookingJournal.appendRecords(batch);
+                        written = true;
+                    }
+                    bookingJournal.force();
+                } catch (IOException e) {
+                    System.err.println("Could not save " + batch.size() + " journal record(s), retrying in " + pause
+                            + " ms: " + e.getMessage());
+                    fail(batchSequence, e);
+                    Thread.sleep(pause);
+                    pause = Math.min(pause * 2, MAX_RETRY_MILLIS);
+                    continue;
+                }
+                batch.clear();
+                written = false;
+                pause = INITIAL_RETRY_MILLIS;
+                complete(batchSequence);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void complete(long sequence) {
+        List<Waiter> done = new ArrayList<>();
+        synchronized (lock) {
+            durableSequence = sequence;
+            while (!waiters.isEmpty() && waiters.peek().sequence <= sequence) {
+                done.add(waiters.poll());
+            }
+        }
+        for (Waiter waiter : done) {
+            waiter.future.complete(null);
+        }
+    }
+
+    // Callers waiting on the failed window hear about it now rather than after however many retries it takes.
+    private void fail(long sequence, IOException cause) {
+        List<Waiter> failed = new ArrayList<>();
+        synchronized (lock) {
+            while (!waiters.isEmpty() && waiters.peek().sequence <= sequence) {
+                failed.add(waiters.poll());
+            }
+        }
+        for (Waiter waiter : failed) {
+            waiter.future.completeExceptionally(new UncheckedIOException(cause));
+        }
+    }
+
+    // The record for the sequence never reached the writer. Everyone waiting on it, or on a later change, hears
+    // about it now; the bus keeps retrying, and changes made after it get through are waited on as usual.
+    @Override
+    public void onFailure(long sequence, Exception cause) {
+        List<Waiter> failed = new ArrayList<>();
+        synchronized (lock) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext();) {
+                Waiter waiter = it.next();
+                if (waiter.sequence >= sequence) {
+                    failed.add(waiter);
+                    it.remove();
+                }
+            }
+        }
+        IOException error = new IOException("Journal record " + sequence + " could not be prepared: "
+                + cause.getMessage(), cause);
+        for (Waiter waiter : failed) {
+            waiter.future.completeExceptionally(new UncheckedIOException(error));
+        }
+    }
+
+    private static String format(BookingEvent event) {
+        switch (event.getType()) {
+            case BOOKING_CREATED:
+                return BookingJournal.formatCreate(event.getBooking());
+            case BOOKING_CANCELLED:
+                return BookingJournal.formatDelete(event.getId());
+            case SERIES_CREATED:
+                return BookingJournal.formatSeries(event.getSeries());
+            case SCHEDULE_CHANGED:
+                return BookingJournal.formatSchedule(event.getBranch());
+            default:
+                return BookingJournal.formatSeriesCancel(event.getId());
+        }
+    }
+
+    private static class Waiter {
+        final long sequence;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear latency histogram in the style of HdrHistogram: each power of two is split into eight buckets, so a
+// recorded value lands within 12.5% of its true size. Every bucket is a LongAdder, so concurrent threads recording
+// into the same recorder update separate cells and recording stays a handful of nanoseconds.
+public class LatencyRecorder implements LatencyRecorderMBean {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private volatile long sinceNanos = System.nanoTime();
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Usage: long start = System.nanoTime(); ... recorder.recordSince(start);
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[bucketIndex(nanos)].increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    // There is no separate counter to keep recording cheap; the count is the sum of the buckets.
+    @Override
+    public long getCount() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public double getOperationsPerSecond() {
+        double seconds = (System.nanoTime() - sinceNanos) / 1e9;
+        return seconds <= 0 ? 0 : getCount() / seconds;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = getCount();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileNanos(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return percentileNanos(0.90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileNanos(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentileNanos(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+        maxNanos.reset();
+        sinceNanos = System.nanoTime();
+    }
+
+    // Middle of the bucket holding the given fraction of recorded values, or 0 when nothing was recorded.
+    public long percentileNanos(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (bucketLowerBound(i) + bucketLowerBound(i + 1)) / 2;
+            }
+        }
+        return maxNanos.get();
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above that, the top SUB_BUCKET_BITS + 1 bits pick the bucket.
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        if (shift + SUB_BUCKET_BITS >= 63) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(java.util.Locale.ROOT,
+                "%-40s count=%-10d ops/s=%-10.1f mean=%-9.2f p50=%-9.2f p90=%-9.2f p99=%-9.2f p99.9=%-9.2f max=%.2f (us)",
+                name, getCount(), getOperationsPerSecond(), getMeanMicros(), getP50Micros(), getP90Micros(),
+                getP99Micros(), getP999Micros(), getMaxMicros());
+    }
+}
\ No newline at end of file
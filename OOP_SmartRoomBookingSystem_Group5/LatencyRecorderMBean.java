@@ -0,0 +1,20 @@
+// Management view of a LatencyRecorder. Times are in microseconds.
+public interface LatencyRecorderMBean {
+    long getCount();
+
+    double getOperationsPerSecond();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
\ No newline at end of file
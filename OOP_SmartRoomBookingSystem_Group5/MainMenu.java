@@ -1,9 +1,16 @@
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.io.*;
 import java.util.InputMismatchException;
 
@@ -13,15 +20,113 @@ public class MainMenu {
     private Map<String, User> users;
     private Scanner scanner;
     private User currentUser;
+    private String sessionToken;
+    private BookingJournal bookingJournal;
+    private BookingEventBus eventBus;
+    private GroupCommitWriter journalWriter;
+    private BookingSnapshot bookingSnapshot;
+    private BookingService bookingService;
+    private BookingArchive bookingArchive;
+    private BookingArchiver bookingArchiver;
+    private UserRepository userRepository;
+    private Authenticator authenticator;
+    private String usersFile;
+    private String bookingsFile;
 
     private static final String USERS_FILE = "users.txt";
     private static final String BOOKINGS_FILE = "bookings.txt";
+    private static final String SNAPSHOT_FILE = "bookings.snapshot";
+    private static final String ARCHIVE_DIRECTORY = "archive";
+    private static final long ROLL_OVER_MINUTES = 60;
+    private static final int JOURNAL_COMPACTION_SLACK = 100;
+    private static final int SLOT_SEARCH_DAYS = 14;
+    private static final int SLOT_SEARCH_RESULTS = 10;
+    private static final int AUTH_THREADS = 2;
+    private static final int AUTH_QUEUE_CAPACITY = 64;
+    private static final long SESSION_TTL_MINUTES = 30;
+    private static final int EVENT_BUFFER_SIZE = 1024;
+    private static final int JOURNAL_COMMIT_RECORDS = 256;
+    // With no delay a commit starts as soon as the previous one is forced; whatever arrived meanwhile goes together.
+    private static final long JOURNAL_COMMIT_MILLIS = 0;
+    private static final long JOURNAL_WAIT_MILLIS = 10_000;
 
     public MainMenu(List<Branch> branches, BookingManager bookingManager, Map<String, User> users) {
+        this(branches, bookingManager, users, ".");
+    }
+
+    public MainMenu(List<Branch> branches, BookingManager bookingManager, Map<String, User> users, String dataDirectory) {
         this.branches = branches;
         this.bookingManager = bookingManager;
         this.users = users;
         this.scanner = new Scanner(System.in);
+        this.usersFile = new File(dataDirectory, USERS_FILE).getPath();
+        this.bookingsFile = new File(dataDirectory, BOOKINGS_FILE).getPath();
+        this.userRepository = new UserRepository(usersFile, users);
+        this.authenticator = new Authenticator(users, userRepository, AUTH_THREADS, AUTH_QUEUE_CAPACITY,
+                SESSION_TTL_MINUTES * 60_000);
+        this.bookingJournal = new BookingJournal(bookingsFile, false);
+        this.bookingSnapshot = new BookingSnapshot(new File(dataDirectory, SNAPSHOT_FILE).getPath());
+        this.eventBus = new BookingEventBus(EVENT_BUFFER_SIZE);
+        this.journalWriter = new GroupCommitWriter(bookingJournal, eventBus, JOURNAL_COMMIT_RECORDS,
+                JOURNAL_COMMIT_MILLIS);
+        eventBus.addConsumer("booking-journal", journalWriter);
+        eventBus.addConsumer("booking-metrics",
+                (event, sequence, endOfBatch) -> BookingMetrics.EVENT_DELIVERY.recordSince(event.getPublishedNanos()));
+        journalWriter.start();
+        eventBus.start();
+        bookingManager.setEventBus(eventBus);
+        this.bookingService = new BookingService(bookingManager, journalWriter);
+        this.bookingArchive = new BookingArchive(new File(dataDirectory, ARCHIVE_DIRECTORY).getPath(), users, branches);
+        this.bookingArchiver = new BookingArchiver(bookingManager, bookingArchive, this::compactBookings);
+    }
+
+    // Marks finished bookings completed and moves past months to the archive, now and then every hour.
+    public void startRollOver() {
+        loadArchivedOccupancy();
+        bookingArchiver.start(ROLL_OVER_MINUTES);
+    }
+
+    // Archived months are no longer in memory, so their bookings are counted into the occupancy reports once here,
+    // straight from the archive records: a booking still took up its room if its customer has been deleted since,
+    // and a room removed since is found among the branch's removed rooms. A crash during roll-over can leave a
+    // booking or series occurrence both archived and still in the journal; the live copy is already counted, so
+    // the archived one is skipped.
+    private void loadArchivedOccupancy() {
+        try {
+            List<YearMonth> months = bookingArchive.getMonths();
+            if (months.isEmpty()) {
+                return;
+            }
+            LocalDate sealedBefore = months.get(months.size() - 1).plusMonths(1).atDay(1);
+            for (Branch branch : branches) {
+                branch.sealOccupancyBefore(sealedBefore);
+            }
+            Map<String, Branch> branchesByName = new HashMap<>();
+            for (Branch branch : branches) {
+                branchesByName.put(branch.getName(), branch);
+            }
+            for (YearMonth month : months) {
+                for (BookingArchive.Slot slot : bookingArchive.getSlots(month)) {
+                    Branch branch = branchesByName.get(slot.branchName);
+                    RecurringBooking liveSeries = bookingManager.getSeriesById(slot.id);
+                    if (branch == null || bookingManager.getBookingById(slot.id) != null
+                            || (liveSeries != null && liveSeries.occursOn(slot.date))) {
+                        continue;
+                    }
+                    branch.addArchivedOccupancy(slot.roomId, slot.date, slot.startTime, slot.endTime);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading booking archive: " + e.getMessage());
+        }
+    }
+
+    public BookingService getBookingService() {
+        return bookingService;
+    }
+
+    public Authenticator getAuthenticator() {
+        return authenticator;
     }
 
     public void show() {
@@ -83,23 +188,33 @@ public class MainMenu {
                 register();
                 break;
             case 3:
-                System.out.println("Thank you for using the Smart Room Booking System!");
-                System.exit(0);
+                exit();
             default:
                 System.out.println("Invalid choice. Please try again.");
                 waitForInput();
         }
     }
 
+    private void exit() {
+        writeSnapshot();
+        System.out.println("Thank you for using the Smart Room Booking System!");
+        System.exit(0);
+    }
+
     private void adminMenu() {
         clearScreen();
         System.out.println("\n=== Admin Menu ===");
+        String rollOverFailure = bookingArchiver.getLastFailure();
+        if (rollOverFailure != null) {
+            System.out.println("Warning: " + rollOverFailure);
+        }
         System.out.println("1. User Management");
         System.out.println("2. Building Management");
         System.out.println("3. Room Management");
         System.out.println("4. View All Bookings");
-        System.out.println("5. Logout");
-        System.out.println("6. Exit");
+        System.out.println("5. Occupancy Report");
+        System.out.println("6. Logout");
+        System.out.println("7. Exit");
         System.out.print("Enter your choice: ");
 
         int choice = -1;
@@ -127,11 +242,13 @@ public class MainMenu {
                 viewAllBookings();
                 break;
             case 5:
-                currentUser = null;
+                occupancyReport();
                 break;
             case 6:
-                System.out.println("Thank you for using the Smart Room Booking System!");
-                System.exit(0);
+                logout();
+                break;
+            case 7:
+                exit();
             default:
                 System.out.println("Invalid choice. Please try again.");
                 waitForInput();
@@ -145,8 +262,10 @@ public class MainMenu {
         System.out.println("2. Book a Room");
         System.out.println("3. Delete Booking");
         System.out.println("4. View My Bookings");
-        System.out.println("5. Logout");
-        System.out.println("6. Exit");
+        System.out.println("5. Find Next Available Slot");
+        System.out.println("6. View Booking History");
+        System.out.println("7. Logout");
+        System.out.println("8. Exit");
         System.out.print("Enter your choice: ");
 
         int choice = -1;
@@ -175,11 +294,16 @@ public class MainMenu {
                 viewMyBookings();
                 break;
             case 5:
-                currentUser = null;
+                findNextAvailableSlot();
                 break;
             case 6:
-                System.out.println("Thank you for using the Smart Room Booking System!");
-                System.exit(0);
+                viewBookingHistory();
+                break;
+            case 7:
+                logout();
+                break;
+            case 8:
+                exit();
             default:
                 System.out.println("Invalid choice. Please try again.");
                 waitForInput();
@@ -208,29 +332,43 @@ public class MainMenu {
             password = scanner.nextLine();
         }
 
-        User user = users.get(userId);
-        if (user != null && user.getName().equals(name) && user.getPassword().equals(password)) {
+        CompletableFuture<String> attempt = authenticator.login(userId, name, password);
+        String token = awaitAuthenticator(attempt);
+        User user = authenticator.authorize(token);
+        if (user != null) {
             currentUser = user;
+            sessionToken = token;
             System.out.println("Login successful!");
             waitForInput();
         } else {
-            System.out.println("Invalid credentials!");
+            if (!attempt.isCompletedExceptionally()) {
+                System.out.println("Invalid credentials!");
+            }
             waitForInput();
         }
     }
 
-    private String generateNextUserId(String role) {
-        int maxId = 0;
-        String prefix = role.equalsIgnoreCase("Admin") ? "A" : "C";
-        for (String id : users.keySet()) {
-            if (id.startsWith(prefix)) {
-                try {
-                    int num = Integer.parseInt(id.substring(1));
-                    if (num > maxId) maxId = num;
-                } catch (NumberFormatException ignored) {}
+    private void logout() {
+        authenticator.logout(sessionToken);
+        sessionToken = null;
+        currentUser = null;
+    }
+
+    // Password hashing runs on the authenticator's own threads; this waits for it and reports a busy or failed
+    // attempt, returning null in that case.
+    private <T> T awaitAuthenticator(CompletableFuture<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                System.out.println("The login service is busy, please try again shortly.");
+            } else {
+                System.out.println("Login service error: " + e.getCause().getMessage());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return prefix + String.format("%03d", maxId + 1);
+        return null;
     }
 
     private void register() {
@@ -255,18 +393,20 @@ public class MainMenu {
             password = scanner.nextLine();
         }
 
-        String userId = generateNextUserId(role);
-
+        String passwordHash = awaitAuthenticator(authenticator.hashPassword(password));
+        if (passwordHash == null) {
+            waitForInput();
+            return;
+        }
         User newUser;
-        if (role.equalsIgnoreCase("Admin")) {
-            newUser = new Admin(userId, name, password);
-        } else {
-            newUser = new Customer(userId, name, password);
+        try {
+            newUser = userRepository.createUser(role, name, passwordHash);
+        } catch (IOException e) {
+            System.out.println("Error saving users file: " + e.getMessage());
+            waitForInput();
+            return;
         }
-
-        users.put(userId, newUser);
-        saveUsersToFile();
-        System.out.println("Registration successful! Your User ID is: " + userId);
+        System.out.println("Registration successful! Your User ID is: " + newUser.getUserId());
         waitForInput();
     }
 
@@ -314,11 +454,15 @@ public class MainMenu {
             return;
         }
 
-        if (users.remove(userId) != null) {
-            saveUsersToFile();
-            System.out.println("User deleted successfully!");
-        } else {
-            System.out.println("User not found!");
+        try {
+            if (userRepository.deleteUser(userId)) {
+                authenticator.logoutUser(userId);
+                System.out.println("User deleted successfully!");
+            } else {
+                System.out.println("User not found!");
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving users file: " + e.getMessage());
         }
         waitForInput();
     }
@@ -341,7 +485,8 @@ public class MainMenu {
         System.out.println("1. Add Building");
         System.out.println("2. Delete Building");
         System.out.println("3. View All Buildings");
-        System.out.println("4. Back");
+        System.out.println("4. Add Holidays");
+        System.out.println("5. Back");
         System.out.print("Enter your choice: ");
 
         int choice = scanner.nextInt();
@@ -359,6 +504,9 @@ public class MainMenu {
                 waitForInput();
                 break;
             case 4:
+                addHolidays();
+                break;
+            case 5:
                 return;
             default:
                 System.out.println("Invalid choice. Please try again.");
@@ -384,15 +532,126 @@ public class MainMenu {
         int index = scanner.nextInt() - 1;
         scanner.nextLine(); 
 
-        if (index >= 0 && index < branches.size()) {
-            branches.remove(index);
-            System.out.println("Building deleted successfully!");
-        } else {
+        if (index < 0 || index >= branches.size()) {
             System.out.println("Invalid building number!");
+            waitForInput();
+            return;
         }
+        Branch branch = branches.get(index);
+        BookingImpact.Action action = askCascadeAction(bookingManager.impactOfBranchRemoval(branch),
+            "move them to other buildings", "keep the building");
+        if (action == null) {
+            System.out.println("Building kept.");
+            waitForInput();
+            return;
+        }
+        branches.remove(branch);
+        // Looked up again once the building is gone, so bookings made while the admin was deciding are included.
+        if (!cascade(bookingManager.impactOfBranchRemoval(branch), action, branches)) {
+            branches.add(index, branch);
+            System.out.println("Building kept.");
+            waitForInput();
+            return;
+        }
+        bookingManager.removeBranch(branch);
+        reportSaved("Building deleted successfully!");
         waitForInput();
     }
 
+    private void addHolidays() {
+        clearScreen();
+        System.out.println("\n=== Add Holidays ===");
+        viewAllBuildings();
+        System.out.print("Select building number: ");
+        int index = scanner.nextInt() - 1;
+        scanner.nextLine();
+        if (index < 0 || index >= branches.size()) {
+            System.out.println("Invalid building number!");
+            waitForInput();
+            return;
+        }
+        System.out.print("Enter holiday dates (yyyy-MM-dd, separated by commas): ");
+        List<LocalDate> dates = new ArrayList<>();
+        try {
+            for (String part : scanner.nextLine().split(",")) {
+                if (!part.isBlank()) {
+                    dates.add(LocalDate.parse(part.trim()));
+                }
+            }
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format!");
+            waitForInput();
+            return;
+        }
+        if (dates.isEmpty()) {
+            System.out.println("No dates entered!");
+            waitForInput();
+            return;
+        }
+
+        Branch branch = branches.get(index);
+        BookingImpact.Action action = askCascadeAction(bookingManager.impactOfClosing(branch, dates),
+            "move them to other buildings", "leave the building open");
+        if (action == null) {
+            System.out.println("No holidays added.");
+            waitForInput();
+            return;
+        }
+        // Only the dates that were not holidays already are taken back if the bookings cannot be dealt with.
+        List<LocalDate> added = new ArrayList<>(dates);
+        added.removeAll(branch.getSchedule().getHolidays());
+        branch.getSchedule().addHolidays(added);
+        if (!cascade(bookingManager.impactOfClosing(branch, dates), action, branches)) {
+            branch.getSchedule().removeHolidays(added);
+            System.out.println("No holidays added.");
+            waitForInput();
+            return;
+        }
+        eventBus.publishScheduleChanged(branch);
+        reportSaved("Holidays added successfully!");
+        waitForInput();
+    }
+
+    // Shows the bookings a change would affect and asks what to do with them. Returns null if the admin would
+    // rather not make the change; with nothing affected there is nothing to ask.
+    private BookingImpact.Action askCascadeAction(BookingImpact impact, String moveChoice, String keepChoice) {
+        if (impact.isEmpty()) {
+            return BookingImpact.Action.CANCEL;
+        }
+        impact.display();
+        System.out.print("\nCancel them (C), " + moveChoice + " (M) or " + keepChoice + " (K)? [K]: ");
+        String choice = scanner.nextLine().trim().toUpperCase();
+        if (choice.equals("C")) {
+            return BookingImpact.Action.CANCEL;
+        }
+        return choice.equals("M") ? BookingImpact.Action.RELOCATE : null;
+    }
+
+    // Returns false, with no booking changed, when the cascade could not be carried out; the caller then undoes
+    // the change that led to it.
+    private boolean cascade(BookingImpact impact, BookingImpact.Action action, List<Branch> relocationBranches) {
+        if (impact.isEmpty()) {
+            return true;
+        }
+        try {
+            bookingManager.cascade(impact, action, relocationBranches).display();
+            return true;
+        } catch (IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Prints the message once the changes are in the journal, or the error if they could not be written.
+    private void reportSaved(String message) {
+        try {
+            bookingService.awaitDurable(JOURNAL_WAIT_MILLIS);
+            System.out.println(message);
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
     private void viewAllBuildings() {
         System.out.println("\n=== All Buildings ===");
         for (int i = 0; i < branches.size(); i++) {
@@ -476,12 +735,34 @@ public class MainMenu {
         branch.displayRooms();
         System.out.print("Enter Room ID to delete: ");
         String roomId = scanner.nextLine();
+        SmartRoom room = branch.getRoomById(roomId);
+        if (room == null) {
+            System.out.println("Room not found!");
+            waitForInput();
+            return;
+        }
 
-        if (branch.deleteRoom(roomId)) {
-            System.out.println("Room deleted successfully!");
-        } else {
+        BookingImpact.Action action = askCascadeAction(bookingManager.impactOfRoomRemoval(branch, room),
+            "move them to other rooms", "keep the room");
+        if (action == null) {
+            System.out.println("Room kept.");
+            waitForInput();
+            return;
+        }
+        int position = branch.getRooms().indexOf(room);
+        if (!bookingManager.removeRoom(branch, room)) {
             System.out.println("Room not found!");
+            waitForInput();
+            return;
+        }
+        // Looked up again once the room is gone, so bookings made while the admin was deciding are included.
+        if (!cascade(bookingManager.impactOfRoomRemoval(branch, room), action, List.of(branch))) {
+            branch.addRoom(position, room);
+            System.out.println("Room kept.");
+            waitForInput();
+            return;
         }
+        reportSaved("Room deleted successfully!");
         waitForInput();
     }
 
@@ -499,10 +780,10 @@ public class MainMenu {
         int buildingIndex = -1;
         while (true) {
             try {
-                System.out.print("Select building number: ");
+                System.out.print("Select building number (0 for any building): ");
                 buildingIndex = scanner.nextInt() - 1;
                 scanner.nextLine(); 
-                if (buildingIndex < 0 || buildingIndex >= branches.size()) {
+                if (buildingIndex < -1 || buildingIndex >= branches.size()) {
                     System.out.println("Invalid building selection!");
                     continue;
                 }
@@ -512,11 +793,27 @@ public class MainMenu {
                 scanner.nextLine();
             }
         }
+        List<Branch> searched = buildingIndex < 0 ? branches : List.of(branches.get(buildingIndex));
+
+        int headcount;
+        while (true) {
+            try {
+                System.out.print("Number of people: ");
+                headcount = scanner.nextInt();
+                scanner.nextLine();
+                if (headcount <= 0) {
+                    System.out.println("Invalid number of people!");
+                    continue;
+                }
+                break;
+            } catch (InputMismatchException e) {
+                System.out.println("Invalid input! Please enter a number.");
+                scanner.nextLine();
+            }
+        }
 
-        Branch selectedBranch = branches.get(buildingIndex);
-        System.out.print("Enter room type (Small/Large): ");
+        System.out.print("Enter room type (Small/Large, blank for any): ");
         String roomType = scanner.nextLine().trim();
-        roomType = roomType.substring(0,1).toUpperCase() + roomType.substring(1).toLowerCase();
 
         System.out.print("Enter date (yyyy-MM-dd): ");
         String dateStr = scanner.nextLine();
@@ -540,41 +837,156 @@ public class MainMenu {
             return;
         }
 
-        List<SmartRoom> availableRooms = selectedBranch.getAvailableRooms(roomType, date, time);
-        if (availableRooms.isEmpty()) {
-            System.out.println("No available rooms found!");
+        System.out.print("Enter end time (HH:mm, blank for " + RoomSchedule.DEFAULT_BOOKING_MINUTES + " minutes): ");
+        String endTimeStr = scanner.nextLine().trim();
+        LocalTime endTime;
+        try {
+            endTime = endTimeStr.isEmpty() ? RoomSchedule.defaultEndTime(time) : LocalTime.parse(endTimeStr);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid time format!");
             waitForInput();
             return;
         }
 
-        int roomIndex = -1;
-        while (true) {
-            try {
-                System.out.println("\nAvailable Rooms:");
-                for (int i = 0; i < availableRooms.size(); i++) {
-                    System.out.println((i + 1) + ". " + availableRooms.get(i));
+        if (searched.stream().noneMatch(branch -> branch.getSchedule().isValidBooking(date, time, endTime))) {
+            if (searched.size() == 1) {
+                BranchSchedule schedule = searched.get(0).getSchedule();
+                System.out.println(searched.get(0).getName() + " is closed at that time (open "
+                    + schedule.getOpeningTime() + " - " + schedule.getClosingTime() + " on "
+                    + new TreeSet<>(schedule.getOperatingDays()) + ", except holidays).");
+            } else {
+                System.out.println("No building is open at that time!");
+            }
+            waitForInput();
+            return;
+        }
+
+        // The smallest free room that seats everyone, so large rooms stay free for the groups that need them.
+        BookingRequest request;
+        try {
+            request = bookingService.findBestFit((Customer) currentUser, searched,
+                roomType.isEmpty() ? null : roomType, headcount, date, time, endTime);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            waitForInput();
+            return;
+        }
+        if (request == null) {
+            System.out.println("No available room seats " + headcount + " people at that time!");
+            waitForInput();
+            return;
+        }
+        System.out.println("\nBest fitting room at " + request.getBranch().getName() + ": " + request.getRoom());
+
+        System.out.print("Repeat booking? (N = no, W = weekly, D = every weekday) [N]: ");
+        String repeat = scanner.nextLine().trim().toUpperCase();
+        try {
+            if (repeat.equals("W") || repeat.equals("D")) {
+                LocalDate lastDate;
+                if (repeat.equals("W")) {
+                    System.out.print("Number of weeks: ");
+                    lastDate = RecurringBooking.lastDateForWeeks(date, Integer.parseInt(scanner.nextLine().trim()));
+                } else {
+                    System.out.print("Repeat until (yyyy-MM-dd): ");
+                    lastDate = LocalDate.parse(scanner.nextLine().trim());
                 }
-                System.out.print("Select room number: ");
-                roomIndex = scanner.nextInt() - 1;
-                scanner.nextLine(); 
-                if (roomIndex < 0 || roomIndex >= availableRooms.size()) {
-                    System.out.println("Invalid room selection!");
-                    continue;
+                RecurringBooking recurring = bookingService.createSeries((Customer) currentUser, request.getBranch(),
+                    request.getRoom(), repeat.equals("W") ? RecurringBooking.Pattern.WEEKLY
+                    : RecurringBooking.Pattern.WEEKDAYS, date, lastDate, time, endTime);
+                bookingService.awaitDurable(JOURNAL_WAIT_MILLIS);
+                System.out.println("Recurring booking successful!");
+                recurring.display();
+            } else {
+                Booking booking = bookingService.createBooking(request);
+                bookingService.awaitDurable(JOURNAL_WAIT_MILLIS);
+                System.out.println("Booking successful!");
+                booking.display();
+            }
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format!");
+        } catch (IllegalStateException | IllegalArgumentException | UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+        waitForInput();
+    }
+
+    private void findNextAvailableSlot() {
+        clearScreen();
+        System.out.println("\n=== Find Next Available Slot ===");
+        viewAllBuildings();
+        List<Branch> searched;
+        String roomType;
+        int minCapacity;
+        int duration;
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            System.out.print("Select building number (blank for all buildings): ");
+            String buildingStr = scanner.nextLine().trim();
+            if (buildingStr.isEmpty()) {
+                searched = new ArrayList<>(branches);
+            } else {
+                int buildingIndex = Integer.parseInt(buildingStr) - 1;
+                if (buildingIndex < 0 || buildingIndex >= branches.size()) {
+                    System.out.println("Invalid building selection!");
+                    waitForInput();
+                    return;
                 }
-                break;
-            } catch (InputMismatchException e) {
-                System.out.println("Invalid input! Please enter a number.");
-                scanner.nextLine();
+                searched = List.of(branches.get(buildingIndex));
             }
+            System.out.print("Enter room type (Small/Large): ");
+            roomType = scanner.nextLine().trim();
+            System.out.print("Enter minimum capacity (blank for any): ");
+            String capacityStr = scanner.nextLine().trim();
+            minCapacity = capacityStr.isEmpty() ? 0 : Integer.parseInt(capacityStr);
+            System.out.print("Enter duration in minutes (blank for " + RoomSchedule.DEFAULT_BOOKING_MINUTES + "): ");
+            String durationStr = scanner.nextLine().trim();
+            duration = durationStr.isEmpty() ? RoomSchedule.DEFAULT_BOOKING_MINUTES : Integer.parseInt(durationStr);
+            System.out.print("Search from date (yyyy-MM-dd, blank for today): ");
+            String fromStr = scanner.nextLine().trim();
+            fromDate = fromStr.isEmpty() ? LocalDate.now() : LocalDate.parse(fromStr);
+            System.out.print("Search until date (yyyy-MM-dd, blank for " + SLOT_SEARCH_DAYS + " days later): ");
+            String toStr = scanner.nextLine().trim();
+            toDate = toStr.isEmpty() ? fromDate.plusDays(SLOT_SEARCH_DAYS) : LocalDate.parse(toStr);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            System.out.println("Invalid input!");
+            waitForInput();
+            return;
         }
 
+        List<SlotFinder.Candidate> candidates;
         try {
-            Booking booking = bookingManager.createBooking((Customer) currentUser, 
-                selectedBranch, availableRooms.get(roomIndex), date, time);
-            saveBookingsToFile();
+            candidates = bookingService.findNextAvailableSlots(searched, roomType, minCapacity, duration, fromDate,
+                toDate, SLOT_SEARCH_RESULTS);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            waitForInput();
+            return;
+        }
+        if (candidates.isEmpty()) {
+            System.out.println("No free slots found in that period!");
+            waitForInput();
+            return;
+        }
+        System.out.println("\nEarliest Free Slots:");
+        for (int i = 0; i < candidates.size(); i++) {
+            System.out.println((i + 1) + ". " + candidates.get(i));
+        }
+        System.out.print("Select a slot to book (blank to go back): ");
+        String choiceStr = scanner.nextLine().trim();
+        if (choiceStr.isEmpty()) {
+            return;
+        }
+        try {
+            SlotFinder.Candidate candidate = candidates.get(Integer.parseInt(choiceStr) - 1);
+            Booking booking = bookingService.createBooking(new BookingRequest((Customer) currentUser,
+                candidate.branch, candidate.room, candidate.date, candidate.getStartTime(), candidate.getEndTime()));
+            bookingService.awaitDurable(JOURNAL_WAIT_MILLIS);
             System.out.println("Booking successful!");
             booking.display();
-        } catch (IllegalStateException e) {
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            System.out.println("Invalid slot selection!");
+        } catch (IllegalStateException | IllegalArgumentException | UncheckedIOException e) {
             System.out.println("Error: " + e.getMessage());
         }
         waitForInput();
@@ -583,14 +995,20 @@ public class MainMenu {
     private void deleteBooking() {
         clearScreen();
         System.out.println("\n=== Delete Booking ===");
-        System.out.print("Enter Booking ID: ");
+        System.out.print("Enter Booking ID or Series ID: ");
         String bookingId = scanner.nextLine();
 
-        if (bookingManager.deleteBooking(bookingId)) {
-            saveBookingsToFile();
-            System.out.println("Booking deleted successfully!");
-        } else {
-            System.out.println("Booking not found!");
+        try {
+            boolean cancelled = RecurringBooking.isSeriesId(bookingId) ? bookingService.cancelSeries(bookingId)
+                : bookingService.cancelBooking(bookingId);
+            if (cancelled) {
+                bookingService.awaitDurable(JOURNAL_WAIT_MILLIS);
+                System.out.println("Booking deleted successfully!");
+            } else {
+                System.out.println("Booking not found!");
+            }
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
         }
         waitForInput();
     }
@@ -598,13 +1016,87 @@ public class MainMenu {
     private void viewMyBookings() {
         clearScreen();
         System.out.println("\n=== My Bookings ===");
-        List<Booking> userBookings = bookingManager.getBookingsByUserName(currentUser.getName());
-        if (userBookings.isEmpty()) {
+        List<Booking> userBookings = bookingManager.getBookingsByUserId(currentUser.getUserId());
+        List<RecurringBooking> userSeries = bookingManager.getSeriesByUserId(currentUser.getUserId());
+        if (userBookings.isEmpty() && userSeries.isEmpty()) {
             System.out.println("No bookings found!");
         } else {
             for (Booking booking : userBookings) {
                 booking.display();
             }
+            for (RecurringBooking recurring : userSeries) {
+                recurring.display();
+            }
+        }
+        waitForInput();
+    }
+
+    // Booked against open hours over a date range, grouped as asked, from the branches' occupancy counters.
+    private void occupancyReport() {
+        clearScreen();
+        System.out.println("\n=== Occupancy Report ===");
+        LocalDate fromDate;
+        LocalDate toDate;
+        OccupancyReport.Dimension by;
+        try {
+            System.out.print("From date (yyyy-MM-dd, blank for the start of this month): ");
+            String fromStr = scanner.nextLine().trim();
+            fromDate = fromStr.isEmpty() ? LocalDate.now().withDayOfMonth(1) : LocalDate.parse(fromStr);
+            System.out.print("Until date (yyyy-MM-dd, blank for the end of that month): ");
+            String toStr = scanner.nextLine().trim();
+            toDate = toStr.isEmpty() ? YearMonth.from(fromDate).atEndOfMonth() : LocalDate.parse(toStr);
+            System.out.print("Group by (branch/room/type/weekday/hour): ");
+            by = OccupancyReport.Dimension.fromString(scanner.nextLine());
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date!");
+            waitForInput();
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            waitForInput();
+            return;
+        }
+
+        List<OccupancyReport.Row> rows;
+        try {
+            rows = OccupancyReport.summarize(branches, fromDate, toDate, by);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            waitForInput();
+            return;
+        }
+        for (OccupancyReport.Row row : rows) {
+            System.out.println(row);
+        }
+
+        System.out.print("\nExport to CSV file (blank to skip): ");
+        String csvFile = scanner.nextLine().trim();
+        if (!csvFile.isEmpty()) {
+            try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+                OccupancyReport.writeCsv(rows, by, out);
+                System.out.println("Report written to " + csvFile);
+            } catch (IOException e) {
+                System.out.println("Error writing report: " + e.getMessage());
+            }
+        }
+        waitForInput();
+    }
+
+    // Completed bookings from archived months, read from the archive on demand.
+    private void viewBookingHistory() {
+        clearScreen();
+        System.out.println("\n=== Booking History ===");
+        try {
+            List<Booking> history = bookingArchive.getBookingsByUserId(currentUser.getUserId());
+            if (history.isEmpty()) {
+                System.out.println("No archived bookings found!");
+            } else {
+                for (Booking booking : history) {
+                    booking.display();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading booking archive: " + e.getMessage());
         }
         waitForInput();
     }
@@ -617,85 +1109,152 @@ public class MainMenu {
     }
 
     public void loadUsersFromFile() {
-        users.clear();
-        try (BufferedReader br = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    String userId = parts[0];
-                    String name = parts[1];
-                    String role = parts[2];
-                    String password = parts[3];
-                    User user = role.equalsIgnoreCase("Admin") ? new Admin(userId, name, password) : new Customer(userId, name, password);
-                    users.put(userId, user);
-                }
-            }
-        } catch (FileNotFoundException e) {
+        long started = System.nanoTime();
+        try {
+            userRepository.load();
         } catch (IOException e) {
             System.out.println("Error reading users file: " + e.getMessage());
+        } finally {
+            BookingMetrics.LOAD_USERS.recordSince(started);
         }
     }
 
+    // Explicit compaction: registrations and deletions are appended to the users file as they happen.
     public void saveUsersToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(USERS_FILE))) {
-            for (User user : users.values()) {
-                String role = (user instanceof Admin) ? "Admin" : "Customer";
-                bw.write(user.getUserId() + "," + user.getName() + "," + role + "," + user.getPassword());
-                bw.newLine();
-            }
+        long started = System.nanoTime();
+        try {
+            userRepository.compact();
         } catch (IOException e) {
             System.out.println("Error saving users file: " + e.getMessage());
+        } finally {
+            BookingMetrics.SAVE_USERS.recordSince(started);
         }
     }
 
     public void loadBookingsFromFile() {
+        long started = System.nanoTime();
         bookingManager.clearBookings();
-        try (BufferedReader br = new BufferedReader(new FileReader(BOOKINGS_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 6) {
-                    String bookingId = parts[0];
-                    String customerId = parts[1];
-                    String branchName = parts[2];
-                    String roomId = parts[3];
-                    LocalDate date = LocalDate.parse(parts[4]);
-                    LocalTime time = LocalTime.parse(parts[5]);
-                    User user = users.get(customerId);
-                    if (user instanceof Customer) {
-                        Branch branch = null;
-                        for (Branch b : branches) {
-                            if (b.getName().equals(branchName)) {
-                                branch = b;
-                                break;
-                            }
-                        }
-                        if (branch != null) {
-                            SmartRoom room = branch.getRoomById(roomId);
-                            if (room != null) {
-                                bookingManager.addBookingFromFile(bookingId, (Customer) user, branch, room, date, time);
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
+        long journalOffset = loadSnapshot();
+        BookingFileLoader loader = new BookingFileLoader(users, branches);
+        try {
+            loader.load(bookingsFile, journalOffset, bookingManager);
         } catch (IOException e) {
             System.out.println("Error reading bookings file: " + e.getMessage());
+            return;
+        } finally {
+            BookingMetrics.LOAD_BOOKINGS.recordSince(started);
+        }
+
+        if (loader.getProblemCount() > 0) {
+            System.out.println("Skipped " + loader.getProblemCount() + " unusable line(s) in " + bookingsFile + ":");
+            List<String> problems = loader.getProblems();
+            for (int i = 0; i < Math.min(problems.size(), 10); i++) {
+                System.out.println("  " + problems.get(i));
+            }
+            waitForInput();
+        }
+
+        // Replaying is cheap, but a journal made mostly of cancelled bookings is worth folding back down.
+        if (journalOffset == 0 && loader.getRecordCount() > 2 * loader.getLoadedCount() + JOURNAL_COMPACTION_SLACK) {
+            saveBookingsToFile();
         }
     }
 
+    // Explicit compaction: rewrites the journal so it holds exactly one record per branch schedule and live booking
+    // or series.
+    // Bookings are held off until the journal has caught up and been rewritten, so no record can land after the swap.
     public void saveBookingsToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(BOOKINGS_FILE))) {
-            for (Booking booking : bookingManager.getAllBookings()) {
-                bw.write(booking.getBookingId() + "," + booking.getCustomer().getUserId() + "," +
-                        booking.getBranch().getName() + "," + booking.getRoom().getRoomId() + "," +
-                        booking.getDate() + "," + booking.getTime());
-                bw.newLine();
-            }
+        try {
+            compactBookings();
         } catch (IOException e) {
             System.out.println("Error saving bookings file: " + e.getMessage());
         }
     }
+
+    // Also run by the roll-over thread, which must not write to the console under the menu; it reports failures
+    // through the exception instead.
+    private void compactBookings() throws IOException {
+        long started = System.nanoTime();
+        try {
+            authenticator.upgradePasswords();
+            bookingManager.runExclusive(() -> {
+                awaitJournal();
+                bookingJournal.compact(() -> branches, bookingManager::getAllBookings, bookingManager::getAllSeries);
+                saveSnapshot();
+            });
+        } finally {
+            BookingMetrics.SAVE_BOOKINGS.recordSince(started);
+        }
+    }
+
+    // Restores branches, rooms and bookings from the binary snapshot and returns the journal offset it covers,
+    // or 0 when there is no usable snapshot and the whole journal has to be replayed.
+    private long loadSnapshot() {
+        if (!bookingSnapshot.exists()) {
+            return 0;
+        }
+        try {
+            bookingSnapshot.load();
+            long offset = bookingSnapshot.getJournalOffset();
+            if (bookingJournal.size() < offset
+                    || bookingJournal.fingerprint(offset) != bookingSnapshot.getJournalFingerprint()) {
+                return 0;
+            }
+            // users.txt records every registration and deletion as it happens, so its users win; the snapshot's
+            // are only used when the file is missing.
+            try {
+                userRepository.restore(bookingSnapshot.getUsers());
+            } catch (IOException e) {
+                System.out.println("Error saving users file: " + e.getMessage());
+            }
+            branches.clear();
+            branches.addAll(bookingSnapshot.getBranches());
+            for (BookingSnapshot.Entry entry : bookingSnapshot.getBookings()) {
+                User user = users.get(entry.customerId);
+                if (user instanceof Customer && !bookingManager.addBookingFromFile(entry.bookingId, (Customer) user,
+                        entry.branch, entry.room, entry.date, entry.startTime, entry.endTime, entry.headcount)) {
+                    System.out.println("Skipped booking " + entry.bookingId + " in the snapshot: it overlaps another booking.");
+                }
+            }
+            for (BookingSnapshot.SeriesEntry entry : bookingSnapshot.getSeries()) {
+                User user = users.get(entry.customerId);
+                if (user instanceof Customer) {
+                    bookingManager.addSeriesFromFile(new RecurringBooking(entry.seriesId, (Customer) user, entry.branch,
+                            entry.room, entry.pattern, entry.firstDate, entry.lastDate, entry.startTime, entry.endTime,
+                            entry.skippedDates));
+                }
+            }
+            return offset;
+        } catch (IOException e) {
+            System.out.println("Error reading snapshot file: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public void writeSnapshot() {
+        try {
+            authenticator.upgradePasswords();
+            bookingManager.runExclusive(this::saveSnapshot);
+        } catch (IOException e) {
+            System.out.println("Error saving snapshot file: " + e.getMessage());
+        }
+    }
+
+    // Must run inside BookingManager.runExclusive, so the journal length matches the bookings written with it.
+    private void saveSnapshot() throws IOException {
+        awaitJournal();
+        long offset = bookingJournal.size();
+        long fingerprint = bookingJournal.fingerprint(offset);
+        bookingSnapshot.write(users.values(), branches, bookingManager.getAllBookings(),
+                bookingManager.getAllSeries(), offset, fingerprint);
+    }
+
+    // Bookings made so far must be in the journal before it is compacted or a snapshot records its length.
+    private void awaitJournal() throws IOException {
+        try {
+            bookingService.awaitDurable(JOURNAL_WAIT_MILLIS);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,148 @@
+import java.time.LocalDate;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps every Booking as an object, indexed by ID, by customer, by (room, date) and by date.
+public class ObjectBookingStore implements BookingStore, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Booking> bookings = new ConcurrentHashMap<>();
+    private final Map<String, Set<Booking>> bookingsByCustomer = new ConcurrentHashMap<>();
+    private final Map<SmartRoom, Map<LocalDate, Set<Booking>>> bookingsByRoomAndDate = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Set<Booking>> bookingsByDate = new ConcurrentHashMap<>();
+
+    @Override
+    public Booking put(Booking booking) {
+        Booking previous = bookings.put(booking.getBookingId(), booking);
+        if (previous != null) {
+            removeSecondaryIndexes(previous);
+        }
+        bookingsByCustomer.compute(booking.getCustomer().getUserId(), (userId, userBookings) -> {
+            Set<Booking> set = userBookings == null ? ConcurrentHashMap.newKeySet() : userBookings;
+            set.add(booking);
+            return set;
+        });
+        bookingsByRoomAndDate.compute(booking.getRoom(), (room, roomBookings) -> {
+            Map<LocalDate, Set<Booking>> days = roomBookings == null ? new ConcurrentHashMap<>() : roomBookings;
+            days.computeIfAbsent(booking.getDate(), k -> ConcurrentHashMap.newKeySet()).add(booking);
+            return days;
+        });
+        bookingsByDate.compute(booking.getDate(), (date, dayBookings) -> {
+            Set<Booking> set = dayBookings == null ? ConcurrentHashMap.newKeySet() : dayBookings;
+            set.add(booking);
+            return set;
+        });
+        return previous;
+    }
+
+    @Override
+    public Booking remove(String bookingId) {
+        Booking booking = bookings.remove(bookingId);
+        if (booking != null) {
+            removeSecondaryIndexes(booking);
+        }
+        return booking;
+    }
+
+    @Override
+    public Booking get(String bookingId) {
+        return bookings.get(bookingId);
+    }
+
+    @Override
+    public List<Booking> getByCustomer(String userId) {
+        Set<Booking> bucket = bookingsByCustomer.get(userId);
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket);
+    }
+
+    @Override
+    public List<Booking> getByRoomAndDate(SmartRoom room, LocalDate date) {
+        Map<LocalDate, Set<Booking>> roomBookings = bookingsByRoomAndDate.get(room);
+        Set<Booking> bucket = roomBookings == null ? null : roomBookings.get(date);
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket);
+    }
+
+    @Override
+    public List<Booking> getByRoom(SmartRoom room) {
+        List<Booking> result = new ArrayList<>();
+        Map<LocalDate, Set<Booking>> roomBookings = bookingsByRoomAndDate.get(room);
+        if (roomBookings != null) {
+            for (Set<Booking> bucket : roomBookings.values()) {
+                result.addAll(bucket);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Booking> getByDate(LocalDate date) {
+        Set<Booking> bucket = bookingsByDate.get(date);
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket);
+    }
+
+    @Override
+    public List<Booking> getAll() {
+        return new ArrayList<>(bookings.values());
+    }
+
+    @Override
+    public List<Booking> getDatedBefore(LocalDate date) {
+        List<Booking> result = new ArrayList<>();
+        for (Booking booking : bookings.values()) {
+            if (booking.getDate().isBefore(date)) {
+                result.add(booking);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean setStatus(String bookingId, BookingStatus status) {
+        Booking booking = bookings.get(bookingId);
+        if (booking == null) {
+            return false;
+        }
+        booking.setStatus(status);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return bookings.size();
+    }
+
+    @Override
+    public void clear() {
+        bookings.clear();
+        bookingsByCustomer.clear();
+        bookingsByRoomAndDate.clear();
+        bookingsByDate.clear();
+    }
+
+    // Buckets are only created and dropped inside compute calls so a concurrent add to the same key cannot be lost.
+    private void removeSecondaryIndexes(Booking booking) {
+        bookingsByCustomer.computeIfPresent(booking.getCustomer().getUserId(), (userId, userBookings) -> {
+            userBookings.remove(booking);
+            return userBookings.isEmpty() ? null : userBookings;
+        });
+        // The room's date map is only touched inside the outer compute, so it can be dropped once it is empty.
+        bookingsByRoomAndDate.computeIfPresent(booking.getRoom(), (room, roomBookings) -> {
+            Set<Booking> dayBookings = roomBookings.get(booking.getDate());
+            if (dayBookings != null) {
+                dayBookings.remove(booking);
+                if (dayBookings.isEmpty()) {
+                    roomBookings.remove(booking.getDate());
+                }
+            }
+            return roomBookings.isEmpty() ? null : roomBookings;
+        });
+        bookingsByDate.computeIfPresent(booking.getDate(), (date, dayBookings) -> {
+            dayBookings.remove(booking);
+            return dayBookings.isEmpty() ? null : dayBookings;
+        });
+    }
+}
\ No newline at end of file
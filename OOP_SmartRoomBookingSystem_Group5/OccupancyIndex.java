@@ -0,0 +1,180 @@
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Booked minutes per (room, date, hour), kept up to date from the rooms' schedule events so that occupancy
+// reports read a few counters per room and day instead of walking every booking. Each event recomputes the hours
+// it touches from the schedule itself, so the counters stay exact however bookings overlap or are freed.
+//
+// Days before the sealed date belong to months that have been moved to the archive. Their counters are frozen:
+// schedule events for them are ignored, and archived bookings are added back with addSealedBooking() on start-up.
+//
+// A removed room keeps its counters, so reports over the days it was in use still count it. After a restart the
+// snapshot brings removed rooms back with addRemovedRoom(), and archived bookings find them by room ID.
+public class OccupancyIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int HOURS_PER_DAY = 24;
+
+    private final Map<SmartRoom, RoomOccupancy> rooms;
+    private volatile LocalDate sealedBefore = LocalDate.MIN;
+
+    public OccupancyIndex() {
+        this.rooms = new ConcurrentHashMap<>();
+    }
+
+    public synchronized void addRoom(SmartRoom room) {
+        RoomOccupancy occupancy = rooms.get(room);
+        if (occupancy != null && occupancy.removedOn == null) {
+            return;
+        }
+        if (occupancy == null) {
+            occupancy = new RoomOccupancy(room.getSchedule());
+            rooms.put(room, occupancy);
+        }
+        occupancy.removedOn = null;
+        listen(room, occupancy);
+    }
+
+    public synchronized void removeRoom(SmartRoom room) {
+        RoomOccupancy occupancy = rooms.get(room);
+        if (occupancy != null && occupancy.removedOn == null) {
+            if (occupancy.listening) {
+                room.getSchedule().removeListener(occupancy);
+                occupancy.listening = false;
+            }
+            occupancy.removedOn = LocalDate.now();
+        }
+    }
+
+    // Brings back a room that was removed before a restart. It keeps listening to its schedule, so the past
+    // bookings loaded into it afterwards are counted.
+    public synchronized void addRemovedRoom(SmartRoom room, LocalDate removedOn) {
+        if (rooms.containsKey(room)) {
+            return;
+        }
+        RoomOccupancy occupancy = new RoomOccupancy(room.getSchedule());
+        occupancy.removedOn = removedOn;
+        rooms.put(room, occupancy);
+        listen(room, occupancy);
+    }
+
+    private void listen(SmartRoom room, RoomOccupancy occupancy) {
+        if (!occupancy.listening) {
+            room.getSchedule().replayBookings(occupancy);
+            room.getSchedule().addListener(occupancy);
+            occupancy.listening = true;
+        }
+    }
+
+    // Rooms that have been removed but still have counters, in the order they were removed.
+    public List<SmartRoom> getRemovedRooms() {
+        List<SmartRoom> removed = new ArrayList<>();
+        for (Map.Entry<SmartRoom, RoomOccupancy> entry : rooms.entrySet()) {
+            if (entry.getValue().removedOn != null) {
+                removed.add(entry.getKey());
+            }
+        }
+        removed.sort(Comparator.comparing((SmartRoom room) -> rooms.get(room).removedOn)
+                .thenComparing(SmartRoom::getRoomId));
+        return removed;
+    }
+
+    // The date the room was removed on, or null while it is in use.
+    public LocalDate getRemovedOn(SmartRoom room) {
+        RoomOccupancy occupancy = rooms.get(room);
+        return occupancy == null ? null : occupancy.removedOn;
+    }
+
+    // The removed room with the ID that was still in use on the date, or null. Should the ID have been reused,
+    // the one removed first after the date is the one meant.
+    public SmartRoom getRemovedRoom(String roomId, LocalDate date) {
+        SmartRoom found = null;
+        LocalDate foundRemovedOn = null;
+        for (Map.Entry<SmartRoom, RoomOccupancy> entry : rooms.entrySet()) {
+            LocalDate removedOn = entry.getValue().removedOn;
+            if (removedOn != null && entry.getKey().getRoomId().equals(roomId) && !date.isAfter(removedOn)
+                    && (found == null || removedOn.isBefore(foundRemovedOn))) {
+                found = entry.getKey();
+                foundRemovedOn = removedOn;
+            }
+        }
+        return found;
+    }
+
+    public synchronized void sealBefore(LocalDate date) {
+        if (date.isAfter(sealedBefore)) {
+            sealedBefore = date;
+        }
+    }
+
+    // Counts a booking from a sealed (archived) day.
+    public void addSealedBooking(SmartRoom room, LocalDate date, int fromMinute, int toMinute) {
+        RoomOccupancy occupancy = rooms.get(room);
+        if (occupancy == null || !date.isBefore(sealedBefore)) {
+            return;
+        }
+        synchronized (occupancy) {
+            byte[] current = occupancy.days.get(date);
+            byte[] updated = current == null ? new byte[HOURS_PER_DAY] : current.clone();
+            for (int hour = fromMinute / 60; hour < HOURS_PER_DAY && hour * 60 < toMinute; hour++) {
+                int overlap = Math.min(toMinute, hour * 60 + 60) - Math.max(fromMinute, hour * 60);
+                updated[hour] = (byte) Math.min(60, updated[hour] + overlap);
+            }
+            occupancy.days.put(date, updated);
+        }
+    }
+
+    // The returned array is never modified afterwards; an update replaces it.
+    public byte[] getBookedMinutesByHour(SmartRoom room, LocalDate date) {
+        RoomOccupancy occupancy = rooms.get(room);
+        return occupancy == null ? null : occupancy.days.get(date);
+    }
+
+    private class RoomOccupancy implements ScheduleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final RoomSchedule schedule;
+        // Days without bookings have no entry.
+        private final Map<LocalDate, byte[]> days = new ConcurrentHashMap<>();
+        private volatile LocalDate removedOn;
+        // Guarded by the index.
+        private boolean listening;
+
+        RoomOccupancy(RoomSchedule schedule) {
+            this.schedule = schedule;
+        }
+
+        @Override
+        public void slotsBooked(LocalDate date, int fromMinute, int toMinute) {
+            refresh(date, fromMinute, toMinute);
+        }
+
+        @Override
+        public void slotsFreed(LocalDate date, int fromMinute, int toMinute) {
+            refresh(date, fromMinute, toMinute);
+        }
+
+        private synchronized void refresh(LocalDate date, int fromMinute, int toMinute) {
+            if (date.isBefore(sealedBefore)) {
+                return;
+            }
+            byte[] current = days.get(date);
+            byte[] updated = current == null ? new byte[HOURS_PER_DAY] : current.clone();
+            for (int hour = fromMinute / 60; hour < HOURS_PER_DAY && hour * 60 < toMinute; hour++) {
+                updated[hour] = (byte) schedule.bookedMinutes(date, hour * 60, hour * 60 + 60);
+            }
+            boolean empty = true;
+            for (byte minutes : updated) {
+                empty &= minutes == 0;
+            }
+            if (empty) {
+                days.remove(date);
+            } else {
+                days.put(date, updated);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Utilization reports built from the branches' occupancy counters. Booked minutes are compared with the minutes
+// the branch was open, so a room that is booked for every opening hour is at 100%. The cost grows with the number
+// of rooms, days and hours asked about, never with the number of bookings.
+public class OccupancyReport {
+    public enum Dimension {
+        BRANCH, ROOM, TYPE, WEEKDAY, HOUR;
+
+        public static Dimension fromString(String value) {
+            for (Dimension dimension : values()) {
+                if (dimension.name().equalsIgnoreCase(value.trim())) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("Unknown report grouping: " + value
+                    + " (use branch, room, type, weekday or hour)");
+        }
+    }
+
+    public static class Row {
+        public final String key;
+        public final long bookedMinutes;
+        public final long openMinutes;
+
+        Row(String key, long bookedMinutes, long openMinutes) {
+            this.key = key;
+            this.bookedMinutes = bookedMinutes;
+            this.openMinutes = openMinutes;
+        }
+
+        public double getUtilization() {
+            return openMinutes == 0 ? 0 : (double) bookedMinutes / openMinutes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-30s %8.1f h booked of %8.1f h open  %6.1f%%", key,
+                    bookedMinutes / 60.0, openMinutes / 60.0, getUtilization() * 100);
+        }
+    }
+
+    private OccupancyReport() {
+    }
+
+    // One row per branch, room, room type, weekday or hour of the day over the dates from..to (inclusive).
+    public static List<Row> summarize(List<Branch> branches, LocalDate from, LocalDate to, Dimension by) {
+        checkRange(from, to);
+        // {booked, open} minutes per key; the hour of the day is the key only for HOUR reports.
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        long[][] hourTotals = new long[OccupancyIndex.HOURS_PER_DAY][2];
+        if (by == Dimension.WEEKDAY) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                totals.put(day.toString(), new long[2]);
+            }
+        } else if (by == Dimension.HOUR) {
+            for (int hour = 0; hour < OccupancyIndex.HOURS_PER_DAY; hour++) {
+                totals.put(hourLabel(hour), hourTotals[hour]);
+            }
+        }
+        for (Branch branch : branches) {
+            List<SmartRoom> rooms = branch.getReportedRooms();
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                int[] open = openMinutesByHour(branch.getSchedule(), date);
+                for (SmartRoom room : rooms) {
+                    if (!branch.hadRoomOn(room, date)) {
+                        continue;
+                    }
+                    byte[] booked = branch.getBookedMinutesByHour(room, date);
+                    if (by == Dimension.HOUR) {
+                        for (int hour = 0; hour < OccupancyIndex.HOURS_PER_DAY; hour++) {
+                            hourTotals[hour][0] += booked == null ? 0 : booked[hour];
+                            hourTotals[hour][1] += open[hour];
+                        }
+                        continue;
+                    }
+                    long[] total = totals.computeIfAbsent(key(by, branch, room, date), k -> new long[2]);
+                    for (int hour = 0; hour < OccupancyIndex.HOURS_PER_DAY; hour++) {
+                        total[0] += booked == null ? 0 : booked[hour];
+                        total[1] += open[hour];
+                    }
+                }
+            }
+        }
+        List<Row> rows = new ArrayList<>(totals.size());
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            rows.add(new Row(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return rows;
+    }
+
+    public static void writeCsv(List<Row> rows, Dimension by, Writer out) throws IOException {
+        out.write(by.name().toLowerCase(Locale.ROOT) + ",booked_minutes,open_minutes,utilization\n");
+        for (Row row : rows) {
+            out.write(csv(row.key) + "," + row.bookedMinutes + "," + row.openMinutes + ","
+                    + String.format(Locale.ROOT, "%.4f", row.getUtilization()) + "\n");
+        }
+    }
+
+    // Full detail: one line per branch, room, date and hour that was open or had bookings.
+    public static void writeDetailCsv(List<Branch> branches, LocalDate from, LocalDate to, Writer out)
+            throws IOException {
+        checkRange(from, to);
+        out.write("branch,room,type,date,hour,booked_minutes,open_minutes\n");
+        for (Branch branch : branches) {
+            List<SmartRoom> rooms = branch.getReportedRooms();
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                int[] open = openMinutesByHour(branch.getSchedule(), date);
+                for (SmartRoom room : rooms) {
+                    if (!branch.hadRoomOn(room, date)) {
+                        continue;
+                    }
+                    byte[] booked = branch.getBookedMinutesByHour(room, date);
+                    for (int hour = 0; hour < OccupancyIndex.HOURS_PER_DAY; hour++) {
+                        int bookedMinutes = booked == null ? 0 : booked[hour];
+                        if (bookedMinutes == 0 && open[hour] == 0) {
+                            continue;
+                        }
+                        out.write(csv(branch.getName()) + "," + csv(room.getRoomId()) + "," + csv(room.getType()) + ","
+                                + date + "," + hourLabel(hour) + "," + bookedMinutes + "," + open[hour] + "\n");
+                    }
+                }
+            }
+        }
+    }
+
+    private static String key(Dimension by, Branch branch, SmartRoom room, LocalDate date) {
+        switch (by) {
+            case BRANCH:
+                return branch.getName();
+            case ROOM:
+                return branch.getName() + " / " + room.getRoomId();
+            case TYPE:
+                return room.getType();
+            default:
+                return date.getDayOfWeek().toString();
+        }
+    }
+
+    // Minutes of each hour of the day the branch is open on the date; all zero on closed days and holidays.
+    static int[] openMinutesByHour(BranchSchedule schedule, LocalDate date) {
+        int[] open = new int[OccupancyIndex.HOURS_PER_DAY];
+        if (!schedule.isOperatingDay(date)) {
+            return open;
+        }
+        int opening = minuteOfDay(schedule.getOpeningTime());
+        int closing = schedule.getClosingTime().equals(LocalTime.MIDNIGHT) ? RoomSchedule.MINUTES_PER_DAY
+                : minuteOfDay(schedule.getClosingTime());
+        for (int hour = 0; hour < OccupancyIndex.HOURS_PER_DAY; hour++) {
+            open[hour] = Math.max(0, Math.min(closing, hour * 60 + 60) - Math.max(opening, hour * 60));
+        }
+        return open;
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.toSecondOfDay() / 60;
+    }
+
+    private static String hourLabel(int hour) {
+        return String.format(Locale.ROOT, "%02d:00", hour);
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The report must end on or after " + from + ".");
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
\ No newline at end of file
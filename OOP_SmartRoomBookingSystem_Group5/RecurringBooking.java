@@ -0,0 +1,199 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A booking that repeats, kept as one rule instead of one Booking per occurrence. The dates it covers are worked
+// out from the pattern when needed; dates the branch was closed on when the series was booked are recorded as
+// skipped so the series keeps meaning the same thing if the calendar changes later.
+public class RecurringBooking implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final AtomicInteger seriesCounter = new AtomicInteger(1);
+
+    public enum Pattern {
+        WEEKLY,
+        WEEKDAYS;
+
+        public boolean matches(LocalDate firstDate, LocalDate date) {
+            if (this == WEEKLY) {
+                return date.getDayOfWeek() == firstDate.getDayOfWeek();
+            }
+            return date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY;
+        }
+
+        public static Pattern fromString(String text) {
+            for (Pattern pattern : values()) {
+                if (pattern.name().equalsIgnoreCase(text)) {
+                    return pattern;
+                }
+            }
+            throw new IllegalArgumentException("Invalid recurrence pattern: " + text);
+        }
+    }
+
+    private String seriesId;
+    private Customer customer;
+    private Branch branch;
+    private SmartRoom room;
+    private Pattern pattern;
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private Set<LocalDate> skippedDates;
+
+    public RecurringBooking(Customer customer, Branch branch, SmartRoom room, Pattern pattern, LocalDate firstDate,
+            LocalDate lastDate, LocalTime startTime, LocalTime endTime, Set<LocalDate> skippedDates) {
+        this(formatId(seriesCounter.getAndIncrement()), customer, branch, room, pattern, firstDate, lastDate,
+                startTime, endTime, skippedDates);
+    }
+
+    RecurringBooking(String seriesId, Customer customer, Branch branch, SmartRoom room, Pattern pattern,
+            LocalDate firstDate, LocalDate lastDate, LocalTime startTime, LocalTime endTime, Set<LocalDate> skippedDates) {
+        this.seriesId = seriesId;
+        this.customer = customer;
+        this.branch = branch;
+        this.room = room;
+        this.pattern = pattern;
+        this.firstDate = firstDate;
+        this.lastDate = lastDate;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.skippedDates = Collections.unmodifiableSet(new TreeSet<>(skippedDates));
+    }
+
+    // The same series, under the same ID, with the dates added to those it skips.
+    RecurringBooking withSkippedDates(Collection<LocalDate> dates) {
+        Set<LocalDate> skipped = new TreeSet<>(skippedDates);
+        skipped.addAll(dates);
+        return new RecurringBooking(seriesId, customer, branch, room, pattern, firstDate, lastDate, startTime, endTime,
+                skipped);
+    }
+
+    // The occurrences from one date to another as a series under the same ID, or null when there are none.
+    RecurringBooking between(LocalDate from, LocalDate to) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date : getOccurrences()) {
+            if (!date.isBefore(from) && !date.isAfter(to)) {
+                dates.add(date);
+            }
+        }
+        if (dates.isEmpty()) {
+            return null;
+        }
+        LocalDate first = dates.get(0);
+        LocalDate last = dates.get(dates.size() - 1);
+        Set<LocalDate> skipped = new TreeSet<>();
+        for (LocalDate date : skippedDates) {
+            if (date.isAfter(first) && date.isBefore(last)) {
+                skipped.add(date);
+            }
+        }
+        return new RecurringBooking(seriesId, customer, branch, room, pattern, first, last, startTime, endTime, skipped);
+    }
+
+    static String formatId(int number) {
+        return String.format("RS%04d", number);
+    }
+
+    static boolean isSeriesId(String id) {
+        return id.startsWith("RS");
+    }
+
+    static void advanceCounterPast(String seriesId) {
+        try {
+            int number = Integer.parseInt(seriesId.substring(2));
+            seriesCounter.accumulateAndGet(number + 1, Math::max);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+        }
+    }
+
+    // Every date from firstDate to lastDate that fits the pattern, before any are skipped.
+    public static List<LocalDate> patternDates(Pattern pattern, LocalDate firstDate, LocalDate lastDate) {
+        List<LocalDate> dates = new ArrayList<>();
+        int step = pattern == Pattern.WEEKLY ? 7 : 1;
+        for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(step)) {
+            if (pattern.matches(firstDate, date)) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    public static LocalDate lastDateForWeeks(LocalDate firstDate, int weeks) {
+        return firstDate.plusWeeks(Math.max(weeks, 1) - 1);
+    }
+
+    public List<LocalDate> getOccurrences() {
+        List<LocalDate> occurrences = patternDates(pattern, firstDate, lastDate);
+        occurrences.removeAll(skippedDates);
+        return occurrences;
+    }
+
+    public boolean occursOn(LocalDate date) {
+        return !date.isBefore(firstDate) && !date.isAfter(lastDate) && pattern.matches(firstDate, date)
+                && !skippedDates.contains(date);
+    }
+
+    public String getSeriesId() {
+        return seriesId;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    public SmartRoom getRoom() {
+        return room;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public Set<LocalDate> getSkippedDates() {
+        return skippedDates;
+    }
+
+    public void display() {
+        List<LocalDate> occurrences = getOccurrences();
+        System.out.println("\n=== Recurring Booking ===");
+        System.out.println("Series ID: " + seriesId);
+        System.out.println("Branch: " + branch.getName());
+        System.out.println("Room: " + room);
+        System.out.println("Repeats: " + (pattern == Pattern.WEEKLY ? "every " + firstDate.getDayOfWeek() : "every weekday")
+                + " from " + firstDate + " to " + lastDate + " (" + occurrences.size() + " occurrences)");
+        System.out.println("Time: " + startTime + " - " + endTime);
+        if (!skippedDates.isEmpty()) {
+            System.out.println("Skipped: " + skippedDates);
+        }
+        System.out.println("Customer ID: " + customer.getUserId());
+    }
+}
\ No newline at end of file
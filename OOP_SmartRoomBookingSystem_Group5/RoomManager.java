@@ -5,25 +5,18 @@ import java.util.List;
 
 public class RoomManager {
     private List<SmartRoom> rooms;
+    private AvailabilityIndex availabilityIndex;
 
     public RoomManager() {
         this.rooms = new ArrayList<>();
+        this.availabilityIndex = new AvailabilityIndex();
     }
 
     public void addRoom(SmartRoom room) {
+        availabilityIndex.addRoom(room);
         rooms.add(room);
     }
 
-    public boolean deleteRoom(String roomId) {
-        for (int i = 0; i < rooms.size(); i++) {
-            if (rooms.get(i).getRoomId().equals(roomId)) {
-                rooms.remove(i);
-                return true;
-            }
-        }
-        return false;
-    }
-
     public SmartRoom getRoomById(String roomId) {
         for (SmartRoom room : rooms) {
             if (room.getRoomId().equals(roomId)) {
@@ -34,13 +27,15 @@ public class RoomManager {
     }
 
     public List<SmartRoom> getAvailableRooms(RoomType type, LocalDate date, LocalTime time) {
-        List<SmartRoom> availableRooms = new ArrayList<>();
-        for (SmartRoom room : rooms) {
-            if (room.getType().equals(type) && room.getSchedule().isAvailable(date, time)) {
-                availableRooms.add(room);
-            }
-        }
-        return availableRooms;
+        return getAvailableRooms(type, date, time, RoomSchedule.defaultEndTime(time));
+    }
+
+    public List<SmartRoom> getAvailableRooms(RoomType type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return availabilityIndex.getAvailableRooms(type.getDisplayName(), date, startTime, endTime);
+    }
+
+    public int countAvailableRooms(RoomType type, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return availabilityIndex.countAvailableRooms(type.getDisplayName(), date, startTime, endTime);
     }
 
     public void displayAllRooms() {
@@ -53,7 +48,7 @@ public class RoomManager {
     public List<SmartRoom> getRoomsByType(RoomType type) {
         List<SmartRoom> typeRooms = new ArrayList<>();
         for (SmartRoom room : rooms) {
-            if (room.getType().equals(type)) {
+            if (room.getType().equals(type.getDisplayName())) {
                 typeRooms.add(room);
             }
         }
@@ -1,47 +1,230 @@
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.io.Serializable;
 
 public class RoomSchedule implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private Map<LocalDate, Map<LocalTime, Boolean>> bookings;
+    private static final long serialVersionUID = 2L;
+    public static final int DEFAULT_SLOT_MINUTES = 15;
+    public static final int DEFAULT_BOOKING_MINUTES = 60;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int slotMinutes;
+    private final int slotsPerDay;
+    // One bit per slot of the day, set when the slot is booked. Days without bookings have no entry.
+    // Writers for the same date are serialised by BookingManager's (room, date) lock.
+    private Map<LocalDate, long[]> bookings;
+    private transient List<ScheduleListener> listeners;
 
     public RoomSchedule() {
-        this.bookings = new HashMap<>();
+        this(DEFAULT_SLOT_MINUTES);
+    }
+
+    public RoomSchedule(int slotMinutes) {
+        if (slotMinutes <= 0 || MINUTES_PER_DAY % slotMinutes != 0) {
+            throw new IllegalArgumentException("Slot length must divide a day evenly: " + slotMinutes);
+        }
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = MINUTES_PER_DAY / slotMinutes;
+        this.bookings = new ConcurrentSkipListMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public void addListener(ScheduleListener listener) {
+        listeners().add(listener);
+    }
+
+    public void removeListener(ScheduleListener listener) {
+        listeners().remove(listener);
+    }
+
+    private List<ScheduleListener> listeners() {
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+        }
+        return listeners;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public int getSlotsPerDay() {
+        return slotsPerDay;
     }
 
     public boolean isAvailable(LocalDate date, LocalTime time) {
-        if (!bookings.containsKey(date)) {
+        return isAvailable(date, time, defaultEndTime(time));
+    }
+
+    public boolean isAvailable(LocalDate date, LocalTime start, LocalTime end) {
+        long started = System.nanoTime();
+        boolean available = isFree(date, start, end);
+        BookingMetrics.SCHEDULE_IS_AVAILABLE.recordSince(started);
+        return available;
+    }
+
+    private boolean isFree(LocalDate date, LocalTime start, LocalTime end) {
+        long[] day = bookings.get(date);
+        if (day == null) {
             return true;
         }
-        return !bookings.get(date).getOrDefault(time, false);
+        int from = startSlot(start);
+        int to = endSlot(start, end);
+        for (int word = from >>> 6; word <= (to - 1) >>> 6; word++) {
+            if ((day[word] & rangeMask(word, from, to)) != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void bookSlot(LocalDate date, LocalTime time) {
-        bookings.putIfAbsent(date, new HashMap<>());
-        bookings.get(date).put(time, true);
+        bookSlot(date, time, defaultEndTime(time));
+    }
+
+    public void bookSlot(LocalDate date, LocalTime start, LocalTime end) {
+        long started = System.nanoTime();
+        long[] day = bookings.computeIfAbsent(date, k -> new long[(slotsPerDay + 63) >>> 6]);
+        int from = startSlot(start);
+        int to = endSlot(start, end);
+        for (int word = from >>> 6; word <= (to - 1) >>> 6; word++) {
+            day[word] |= rangeMask(word, from, to);
+        }
+        for (ScheduleListener listener : listeners()) {
+            listener.slotsBooked(date, from * slotMinutes, to * slotMinutes);
+        }
+        BookingMetrics.SCHEDULE_BOOK_SLOT.recordSince(started);
     }
 
     public void freeSlot(LocalDate date, LocalTime time) {
-        if (bookings.containsKey(date)) {
-            bookings.get(date).remove(time);
-            if (bookings.get(date).isEmpty()) {
-                bookings.remove(date);
+        freeSlot(date, time, defaultEndTime(time));
+    }
+
+    public void freeSlot(LocalDate date, LocalTime start, LocalTime end) {
+        long started = System.nanoTime();
+        long[] day = bookings.get(date);
+        if (day == null) {
+            BookingMetrics.SCHEDULE_FREE_SLOT.recordSince(started);
+            return;
+        }
+        int from = startSlot(start);
+        int to = endSlot(start, end);
+        boolean empty = true;
+        for (int word = 0; word < day.length; word++) {
+            if (word >= from >>> 6 && word <= (to - 1) >>> 6) {
+                day[word] &= ~rangeMask(word, from, to);
+            }
+            empty &= day[word] == 0;
+        }
+        if (empty) {
+            bookings.remove(date);
+        }
+        for (ScheduleListener listener : listeners()) {
+            listener.slotsFreed(date, from * slotMinutes, to * slotMinutes);
+        }
+        BookingMetrics.SCHEDULE_FREE_SLOT.recordSince(started);
+    }
+
+    // Minutes booked between fromMinute and toMinute of the day, counting each booked slot that starts in that range.
+    public int bookedMinutes(LocalDate date, int fromMinute, int toMinute) {
+        long[] day = bookings.get(date);
+        if (day == null) {
+            return 0;
+        }
+        int from = (Math.max(fromMinute, 0) + slotMinutes - 1) / slotMinutes;
+        int to = Math.min((toMinute + slotMinutes - 1) / slotMinutes, slotsPerDay);
+        int slots = 0;
+        for (int word = from >>> 6; from < to && word <= (to - 1) >>> 6; word++) {
+            slots += Long.bitCount(day[word] & rangeMask(word, from, to));
+        }
+        return slots * slotMinutes;
+    }
+
+    // Reports every booked run of slots to the listener, e.g. to seed an index for a room that already has bookings.
+    public void replayBookings(ScheduleListener listener) {
+        for (Map.Entry<LocalDate, long[]> dateEntry : bookings.entrySet()) {
+            long[] day = dateEntry.getValue();
+            int slot = 0;
+            while (slot < slotsPerDay) {
+                if (!isBooked(day, slot)) {
+                    slot++;
+                    continue;
+                }
+                int runStart = slot;
+                while (slot < slotsPerDay && isBooked(day, slot)) {
+                    slot++;
+                }
+                listener.slotsBooked(dateEntry.getKey(), runStart * slotMinutes, slot * slotMinutes);
             }
         }
     }
 
     public void displaySchedule() {
         System.out.println("\n=== Room Schedule ===");
-        for (Map.Entry<LocalDate, Map<LocalTime, Boolean>> dateEntry : bookings.entrySet()) {
+        for (Map.Entry<LocalDate, long[]> dateEntry : bookings.entrySet()) {
             System.out.println("\nDate: " + dateEntry.getKey());
-            for (Map.Entry<LocalTime, Boolean> timeEntry : dateEntry.getValue().entrySet()) {
-                if (timeEntry.getValue()) {
-                    System.out.println("Time: " + timeEntry.getKey() + " - Booked");
+            long[] day = dateEntry.getValue();
+            int slot = 0;
+            while (slot < slotsPerDay) {
+                if (!isBooked(day, slot)) {
+                    slot++;
+                    continue;
                 }
+                int runStart = slot;
+                while (slot < slotsPerDay && isBooked(day, slot)) {
+                    slot++;
+                }
+                System.out.println("Time: " + slotTime(runStart) + " - " + slotTime(slot) + " - Booked");
             }
         }
     }
-} 
\ No newline at end of file
+
+    // A default length that would run past midnight (e.g. 23:30 + 1 hour) stops at midnight.
+    public static LocalTime defaultEndTime(LocalTime start) {
+        LocalTime end = start.plusMinutes(DEFAULT_BOOKING_MINUTES);
+        return end.isAfter(start) ? end : LocalTime.MIDNIGHT;
+    }
+
+    // Whether [start, end) is a range within one day. An end of midnight means the end of the day.
+    public static boolean isValidRange(LocalTime start, LocalTime end) {
+        return end.isAfter(start) || end.equals(LocalTime.MIDNIGHT);
+    }
+
+    public static int endMinuteOfDay(LocalTime start, LocalTime end) {
+        if (!isValidRange(start, end)) {
+            throw new IllegalArgumentException("End time " + end + " is not after start time " + start + ".");
+        }
+        return end.equals(LocalTime.MIDNIGHT) ? MINUTES_PER_DAY : (end.toSecondOfDay() + 59) / 60;
+    }
+
+    int startSlot(LocalTime start) {
+        return start.toSecondOfDay() / 60 / slotMinutes;
+    }
+
+    int endSlot(LocalTime start, LocalTime end) {
+        return (endMinuteOfDay(start, end) + slotMinutes - 1) / slotMinutes;
+    }
+
+    private String slotTime(int slot) {
+        return slot >= slotsPerDay ? "24:00" : LocalTime.ofSecondOfDay((long) slot * slotMinutes * 60).toString();
+    }
+
+    private static boolean isBooked(long[] day, int slot) {
+        return (day[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    // Bits of the given word that fall inside the slot range [from, to).
+    static long rangeMask(int word, int from, int to) {
+        int lo = Math.max(from - (word << 6), 0);
+        int hi = Math.min(to - (word << 6), 64);
+        if (hi <= lo) {
+            return 0L;
+        }
+        long upper = hi == 64 ? -1L : (1L << hi) - 1;
+        return upper & (-1L << lo);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,7 @@
+import java.time.LocalDate;
+
+public interface ScheduleListener {
+    void slotsBooked(LocalDate date, int fromMinute, int toMinute);
+
+    void slotsFreed(LocalDate date, int fromMinute, int toMinute);
+}
\ No newline at end of file
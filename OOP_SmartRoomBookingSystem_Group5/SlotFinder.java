@@ -0,0 +1,101 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Finds the earliest free (branch, room, start) combinations for a block of time. Dates are walked in order and
+// each branch's non-operating days and holidays are skipped outright; within a day the branch's availability
+// index reports every suitable room's first free start between opening and closing, so at most one candidate
+// per room per day is offered. Branches are searched in parallel on the common ForkJoin pool, each for its own
+// earliest candidates, and the results are merged.
+public class SlotFinder {
+
+    private SlotFinder() {
+    }
+
+    public static List<Candidate> findEarliest(List<Branch> branches, String type, int minCapacity, int durationMinutes,
+            LocalDate fromDate, LocalDate toDate, int limit, LocalDateTime notBefore) {
+        if (durationMinutes <= 0) {
+            throw new IllegalArgumentException("Duration must be positive.");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("At least one result must be requested.");
+        }
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("The search range ends before it starts.");
+        }
+
+        String roomType = RoomType.fromString(type).getDisplayName();
+        LocalDate firstDate = fromDate.isBefore(notBefore.toLocalDate()) ? notBefore.toLocalDate() : fromDate;
+        List<List<Candidate>> perBranch = branches.parallelStream()
+                .map(branch -> findEarliest(branch, roomType, minCapacity, durationMinutes, firstDate, toDate, limit,
+                        notBefore))
+                .collect(Collectors.toList());
+        List<Candidate> results = new ArrayList<>();
+        for (List<Candidate> candidates : perBranch) {
+            results.addAll(candidates);
+        }
+        // Stable sort: candidates with the same date and start keep branch and room order.
+        results.sort(Comparator.comparing((Candidate c) -> c.date).thenComparingInt(c -> c.startMinute));
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    // At least the branch's earliest `limit` candidates, in date and start order. Later days cannot improve on a
+    // day that already filled the limit, so the search stops there.
+    private static List<Candidate> findEarliest(Branch branch, String roomType, int minCapacity, int durationMinutes,
+            LocalDate firstDate, LocalDate toDate, int limit, LocalDateTime notBefore) {
+        List<Candidate> results = new ArrayList<>();
+        BranchSchedule schedule = branch.getSchedule();
+        for (LocalDate date = firstDate; !date.isAfter(toDate) && results.size() < limit; date = date.plusDays(1)) {
+            int openMinute = schedule.getOpeningMinute(date);
+            if (openMinute < 0) {
+                continue;
+            }
+            int closeMinute = schedule.getClosingMinute(date);
+            if (date.equals(notBefore.toLocalDate())) {
+                openMinute = Math.max(openMinute, (notBefore.toLocalTime().toSecondOfDay() + 59) / 60);
+            }
+            List<Candidate> day = new ArrayList<>();
+            LocalDate candidateDate = date;
+            branch.findFirstFreeStarts(roomType, minCapacity, date, openMinute, closeMinute, durationMinutes,
+                    (room, start) -> day.add(new Candidate(branch, room, candidateDate, start, durationMinutes)));
+            day.sort(Comparator.comparingInt(c -> c.startMinute));
+            results.addAll(day);
+        }
+        return results;
+    }
+
+    public static class Candidate {
+        public final Branch branch;
+        public final SmartRoom room;
+        public final LocalDate date;
+        private final int startMinute;
+        private final int durationMinutes;
+
+        Candidate(Branch branch, SmartRoom room, LocalDate date, int startMinute, int durationMinutes) {
+            this.branch = branch;
+            this.room = room;
+            this.date = date;
+            this.startMinute = startMinute;
+            this.durationMinutes = durationMinutes;
+        }
+
+        public LocalTime getStartTime() {
+            return LocalTime.of(startMinute / 60, startMinute % 60);
+        }
+
+        public LocalTime getEndTime() {
+            int end = startMinute + durationMinutes;
+            return end >= RoomSchedule.MINUTES_PER_DAY ? LocalTime.MIDNIGHT : LocalTime.of(end / 60, end % 60);
+        }
+
+        @Override
+        public String toString() {
+            return branch.getName() + " " + room.getRoomId() + " (" + room.getType() + ", capacity " + room.getCapacity()
+                    + ") on " + date + " " + getStartTime() + " - " + getEndTime();
+        }
+    }
+}
\ No newline at end of file
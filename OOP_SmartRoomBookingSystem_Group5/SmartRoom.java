@@ -8,10 +8,14 @@ public class SmartRoom implements Serializable {
     private RoomSchedule schedule;
 
     public SmartRoom(String roomId, String type, int capacity) {
+        this(roomId, type, capacity, RoomSchedule.DEFAULT_SLOT_MINUTES);
+    }
+
+    public SmartRoom(String roomId, String type, int capacity, int slotMinutes) {
         this.roomId = roomId;
         this.type = type;
         this.capacity = capacity;
-        this.schedule = new RoomSchedule();
+        this.schedule = new RoomSchedule(slotMinutes);
     }
 
     public String getRoomId() {
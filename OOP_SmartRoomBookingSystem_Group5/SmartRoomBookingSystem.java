@@ -1,29 +1,61 @@
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class SmartRoomBookingSystem {
     private static BookingManager bookingManager;
     private static List<Branch> branches;
     private static Map<String, User> users;
+    private static final int HTTP_MAX_CONCURRENT = 2048;
+    private static final long HTTP_MAX_WAIT_MILLIS = 500;
+    private static final String METRICS_FILE = "metrics.txt";
+    private static final long METRICS_DUMP_SECONDS = 60;
 
     public static void main(String[] args) {
-        initializeSystem();
+        // --columnar-store keeps bookings in primitive columns, for installations with very long histories
+        boolean columnarStore = false;
+        for (String arg : args) {
+            columnarStore |= arg.equals("--columnar-store");
+        }
+        initializeSystem(columnarStore);
        
         MainMenu mainMenu = new MainMenu(branches, bookingManager, users);
         
         mainMenu.loadUsersFromFile();
         mainMenu.loadBookingsFromFile();
+        mainMenu.startRollOver();
+        // Latency figures are also available over JMX (jconsole, VisualVM) under SmartRoomBookingSystem
+        BookingMetrics.startDump(METRICS_FILE, METRICS_DUMP_SECONDS);
+
+        // Optional: serve the JSON API alongside the console, e.g. --http-port=8080
+        for (String arg : args) {
+            if (arg.startsWith("--http-port=")) {
+                startHttpServer(Integer.parseInt(arg.substring("--http-port=".length())), mainMenu);
+            }
+        }
 
         mainMenu.show();
     }
 
-    private static void initializeSystem() {
+    private static void startHttpServer(int port, MainMenu mainMenu) {
+        try {
+            BookingHttpServer server = new BookingHttpServer(port, mainMenu.getBookingService(), branches,
+                    mainMenu.getAuthenticator(), HTTP_MAX_CONCURRENT, HTTP_MAX_WAIT_MILLIS);
+            server.start();
+            System.out.println("HTTP API listening on port " + server.getPort());
+        } catch (IOException e) {
+            System.out.println("Could not start HTTP API: " + e.getMessage());
+        }
+    }
+
+    private static void initializeSystem(boolean columnarStore) {
         // Initialize new system
-        bookingManager = new BookingManager();
-        branches = new ArrayList<>();
-        users = new HashMap<>();
+        // Shared with the HTTP API threads, hence the concurrent collections
+        bookingManager = new BookingManager(columnarStore ? ColumnarBookingStore::new : ObjectBookingStore::new);
+        branches = new CopyOnWriteArrayList<>();
+        users = new ConcurrentHashMap<>();
         
         // Create branches
         Branch psz = new Branch("PSZ, UTMJB");
@@ -24,5 +24,10 @@ public abstract class User implements Serializable {
         return password;
     }
 
+    // Holds a PasswordHasher hash, or plaintext for accounts that have not logged in since hashing was introduced.
+    void setPassword(String password) {
+        this.password = password;
+    }
+
     public abstract void displayRole();
 } 
\ No newline at end of file
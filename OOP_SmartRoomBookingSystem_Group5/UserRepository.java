@@ -0,0 +1,214 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps the shared user map in step with users.txt, which is an append-only log of
+//   <id>,<name>,<role>,<password>   a user was added
+//   DELETED,<id>                    a user was removed
+//   SEQUENCE,<prefix>,<number>      the highest ID number handed out for a prefix, written by compaction
+// Plain user lines are the original file format, so existing files load unchanged. New IDs come from a counter
+// per prefix, so registering or deleting a user appends one line instead of scanning and rewriting every user.
+// The log is compacted once removed users make up most of it, and whenever compact() is called.
+public class UserRepository {
+    public static final String ADMIN_PREFIX = "A";
+    public static final String CUSTOMER_PREFIX = "C";
+    private static final String DELETED = "DELETED";
+    private static final String SEQUENCE = "SEQUENCE";
+    private static final int COMPACTION_SLACK = 100;
+
+    private final Path path;
+    private final Map<String, User> users;
+    private final Map<String, AtomicInteger> sequences;
+    private FileChannel channel;
+    private int recordCount;
+
+    public UserRepository(String fileName, Map<String, User> users) {
+        this.path = Paths.get(fileName);
+        this.users = users;
+        this.sequences = new ConcurrentHashMap<>();
+    }
+
+    // Replaces the contents of the user map with the users in the log.
+    public synchronized void load() throws IOException {
+        close();
+        users.clear();
+        sequences.clear();
+        recordCount = 0;
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length == 4) {
+                    User user = parts[2].equalsIgnoreCase("Admin") ? new Admin(parts[0], parts[1], parts[3])
+                            : new Customer(parts[0], parts[1], parts[3]);
+                    users.put(user.getUserId(), user);
+                    advanceSequence(user.getUserId());
+                } else if (parts.length == 2 && parts[0].equals(DELETED)) {
+                    users.remove(parts[1]);
+                } else if (parts.length == 3 && parts[0].equals(SEQUENCE)) {
+                    try {
+                        sequence(parts[1]).accumulateAndGet(Integer.parseInt(parts[2]), Math::max);
+                    } catch (NumberFormatException ignored) {}
+                } else {
+                    continue;
+                }
+                recordCount++;
+            }
+        }
+        if (recordCount > 2 * users.size() + COMPACTION_SLACK) {
+            compact();
+        }
+    }
+
+    // Takes the users from another copy, such as a snapshot, when there is no log to load them from. The log is
+    // written out straight away, so from then on it is the copy that counts. Does nothing if the log exists.
+    public synchronized boolean restore(Collection<User> restored) throws IOException {
+        if (Files.exists(path)) {
+            return false;
+        }
+        for (User user : restored) {
+            users.put(user.getUserId(), user);
+            advanceSequence(user.getUserId());
+        }
+        compact();
+        return true;
+    }
+
+    public synchronized User createUser(String role, String name, String password) throws IOException {
+        boolean admin = role.equalsIgnoreCase("Admin");
+        String userId = nextUserId(admin ? ADMIN_PREFIX : CUSTOMER_PREFIX);
+        User user = admin ? new Admin(userId, name, password) : new Customer(userId, name, password);
+        append(format(user));
+        users.put(userId, user);
+        return user;
+    }
+
+    public synchronized void updatePassword(User user, String password) throws IOException {
+        String previous = user.getPassword();
+        user.setPassword(password);
+        try {
+            append(format(user));
+        } catch (IOException e) {
+            user.setPassword(previous);
+            throw e;
+        }
+    }
+
+    public synchronized boolean deleteUser(String userId) throws IOException {
+        if (!users.containsKey(userId)) {
+            return false;
+        }
+        append(DELETED + "," + userId);
+        users.remove(userId);
+        if (recordCount > 2 * users.size() + COMPACTION_SLACK) {
+            compact();
+        }
+        return true;
+    }
+
+    public String nextUserId(String prefix) {
+        return prefix + String.format("%03d", sequence(prefix).incrementAndGet());
+    }
+
+    // Rewrites the log as the sequences followed by one line per current user, via a temporary file that
+    // atomically replaces the old log.
+    public synchronized void compact() throws IOException {
+        close();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int written = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter bw = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, AtomicInteger> entry : sequences.entrySet()) {
+                bw.write(SEQUENCE + "," + entry.getKey() + "," + entry.getValue().get());
+                bw.newLine();
+                written++;
+            }
+            for (User user : users.values()) {
+                bw.write(format(user));
+                bw.newLine();
+                written++;
+            }
+            bw.flush();
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recordCount = written;
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void append(String record) throws IOException {
+        FileChannel out = openChannel();
+        ByteBuffer buffer = ByteBuffer.wrap((record + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        recordCount++;
+    }
+
+    // Hand-edited files often lack a final line break; one is added first so the new record starts its own line.
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            boolean endsMidLine = false;
+            if (Files.exists(path) && Files.size(path) > 0) {
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    in.read(last, in.size() - 1);
+                    endsMidLine = last.get(0) != '\n';
+                }
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (endsMidLine) {
+                channel.write(ByteBuffer.wrap(System.lineSeparator().getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        return channel;
+    }
+
+    private AtomicInteger sequence(String prefix) {
+        return sequences.computeIfAbsent(prefix, k -> new AtomicInteger());
+    }
+
+    // IDs are a letter prefix followed by a number; anything else does not take part in numbering.
+    private void advanceSequence(String userId) {
+        int prefixLength = 0;
+        while (prefixLength < userId.length() && !Character.isDigit(userId.charAt(prefixLength))) {
+            prefixLength++;
+        }
+        if (prefixLength == 0 || prefixLength == userId.length()) {
+            return;
+        }
+        try {
+            sequence(userId.substring(0, prefixLength))
+                    .accumulateAndGet(Integer.parseInt(userId.substring(prefixLength)), Math::max);
+        } catch (NumberFormatException ignored) {}
+    }
+
+    private static String format(User user) {
+        String role = (user instanceof Admin) ? "Admin" : "Customer";
+        return user.getUserId() + "," + user.getName() + "," + role + "," + user.getPassword();
+    }
+}
\ No newline at end of file
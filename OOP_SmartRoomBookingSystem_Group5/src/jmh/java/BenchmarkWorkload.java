@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import benchmarks.Workload;
+
+// The benchmarks' view of the application; see benchmarks.Workload.
+public class BenchmarkWorkload implements Workload {
+    private static final String[] TYPES = { "Small", "Large" };
+    private static final int FIRST_HOUR = 8;
+    private static final int LAST_HOUR = 20;
+
+    private int roomsPerBranch;
+    private int days;
+    private int bookingCount;
+    private List<Branch> branches;
+    private List<SmartRoom> allRooms;
+    private Map<String, User> users;
+    private List<Customer> customers;
+    private BookingManager bookingManager;
+    private AvailabilityCache availabilityCache;
+    private RoomSchedule scratchSchedule;
+    private List<Booking> remembered;
+    private LocalDate firstDay;
+    private Random random;
+    private File directory;
+    private MainMenu menu;
+
+    @Override
+    public void setUp(int branchCount, int roomsPerBranch, int days, int bookingCount, String store) {
+        this.roomsPerBranch = roomsPerBranch;
+        this.days = days;
+        this.bookingCount = bookingCount;
+        random = new Random(42);
+        firstDay = LocalDate.now().plusDays(1);
+        branches = new ArrayList<>();
+        allRooms = new ArrayList<>();
+        for (int b = 0; b < branchCount; b++) {
+            Branch branch = new Branch("Branch " + b);
+            for (int r = 0; r < roomsPerBranch; r++) {
+                String type = TYPES[r % TYPES.length];
+                SmartRoom room = new SmartRoom("B" + b + "R" + r, type, RoomType.fromString(type).getDefaultCapacity());
+                branch.addRoom(room);
+                allRooms.add(room);
+            }
+            branches.add(branch);
+        }
+        users = new HashMap<>();
+        customers = new ArrayList<>();
+        // Stored passwords are hashes; hashing is deliberately slow, so every customer shares one.
+        String password = PasswordHasher.hash("password");
+        for (int i = 1; i <= Math.max(1, bookingCount / 10); i++) {
+            Customer customer = new Customer(String.format("C%03d", i), "Customer " + i, password);
+            users.put(customer.getUserId(), customer);
+            customers.add(customer);
+        }
+        bookingManager = new BookingManager(store.equals("columnar") ? ColumnarBookingStore::new : ObjectBookingStore::new);
+        availabilityCache = new AvailabilityCache();
+        scratchSchedule = new RoomSchedule();
+    }
+
+    @Override
+    public void clearBookings() {
+        bookingManager.clearBookings();
+    }
+
+    @Override
+    public void fillBookings() {
+        bookingManager.clearBookings();
+        int capacity = allRooms.size() * days * (LAST_HOUR - FIRST_HOUR);
+        for (int i = 0; i < bookingCount && i < capacity; i++) {
+            int roomIndex = i % allRooms.size();
+            int slot = i / allRooms.size();
+            LocalDate date = firstDay.plusDays(slot % days);
+            LocalTime time = LocalTime.of(FIRST_HOUR + slot / days, 0);
+            bookingManager.createBooking(customers.get(i % customers.size()), branches.get(roomIndex / roomsPerBranch),
+                    allRooms.get(roomIndex), date, time);
+        }
+    }
+
+    @Override
+    public void rememberBookings() {
+        remembered = bookingManager.getAllBookings();
+    }
+
+    @Override
+    public int deleteRemembered() {
+        int deleted = 0;
+        for (Booking booking : remembered) {
+            if (bookingManager.deleteBooking(booking.getBookingId())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Object getBookingsByUserName() {
+        return bookingManager.getBookingsByUserName(randomCustomer().getName());
+    }
+
+    @Override
+    public Object getBookingsByUserId() {
+        return bookingManager.getBookingsByUserId(randomCustomer().getUserId());
+    }
+
+    @Override
+    public Object getAvailableRooms() {
+        return randomBranch().getAvailableRooms(randomType(), randomDay(), randomTime());
+    }
+
+    @Override
+    public Object cachedGetAvailableRooms() {
+        LocalTime time = randomTime();
+        return availabilityCache.getAvailableRooms(randomBranch(), randomType(), randomDay(), time,
+                RoomSchedule.defaultEndTime(time));
+    }
+
+    @Override
+    public Object findBestFitRoom() {
+        LocalTime time = randomTime();
+        return randomBranch().findBestFitRoom(null, 1 + random.nextInt(8), randomDay(), time,
+                RoomSchedule.defaultEndTime(time));
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return allRooms.get(random.nextInt(allRooms.size())).getSchedule().isAvailable(randomDay(), randomTime());
+    }
+
+    @Override
+    public Object bookAndFreeSlot() {
+        LocalDate date = randomDay();
+        LocalTime time = randomTime();
+        scratchSchedule.bookSlot(date, time);
+        scratchSchedule.freeSlot(date, time);
+        return scratchSchedule;
+    }
+
+    @Override
+    public void saveFiles(boolean snapshot) throws IOException {
+        directory = Files.createTempDirectory("booking-benchmark").toFile();
+        menu = new MainMenu(branches, bookingManager, users, directory.getPath());
+        menu.saveUsersToFile();
+        menu.saveBookingsToFile();
+        if (snapshot) {
+            menu.writeSnapshot();
+        } else {
+            new File(directory, "bookings.snapshot").delete();
+        }
+    }
+
+    @Override
+    public void saveUsersToFile() {
+        menu.saveUsersToFile();
+    }
+
+    @Override
+    public void loadUsersFromFile() {
+        menu.loadUsersFromFile();
+    }
+
+    @Override
+    public void saveBookingsToFile() {
+        menu.saveBookingsToFile();
+    }
+
+    @Override
+    public void loadBookingsFromFile() {
+        menu.loadBookingsFromFile();
+    }
+
+    @Override
+    public void deleteFiles() {
+        if (directory == null) {
+            return;
+        }
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        directory = null;
+    }
+
+    private Customer randomCustomer() {
+        return customers.get(random.nextInt(customers.size()));
+    }
+
+    private Branch randomBranch() {
+        return branches.get(random.nextInt(branches.size()));
+    }
+
+    private String randomType() {
+        return TYPES[random.nextInt(TYPES.length)];
+    }
+
+    private LocalDate randomDay() {
+        return firstDay.plusDays(random.nextInt(days));
+    }
+
+    private LocalTime randomTime() {
+        return LocalTime.of(FIRST_HOUR + random.nextInt(LAST_HOUR - FIRST_HOUR), 0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Availability checks against a filled data set: Branch.getAvailableRooms, the AvailabilityCache in front of it,
+// best-fit allocation, and RoomSchedule.isAvailable and bookSlot on a single room.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark extends WorkloadState {
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        createWorkload();
+        workload.fillBookings();
+    }
+
+    @Benchmark
+    public Object getAvailableRooms() {
+        return workload.getAvailableRooms();
+    }
+
+    @Benchmark
+    public Object cachedGetAvailableRooms() {
+        return workload.cachedGetAvailableRooms();
+    }
+
+    @Benchmark
+    public Object findBestFitRoom() {
+        return workload.findBestFitRoom();
+    }
+
+    @Benchmark
+    public boolean isAvailable() {
+        return workload.isAvailable();
+    }
+
+    @Benchmark
+    public Object bookSlot() {
+        return workload.bookAndFreeSlot();
+    }
+}
\ No newline at end of file
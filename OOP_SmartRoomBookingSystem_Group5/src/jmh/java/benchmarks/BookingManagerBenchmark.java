@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// BookingManager.createBooking, deleteBooking and the per-customer lookups. A data set only has room for so many
+// bookings, so creating and deleting are timed over a whole fill or emptying of it, one booking at a time; divide
+// by the bookings parameter for the cost of one.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingManagerBenchmark {
+
+    @Benchmark
+    public void createBooking(Empty state) {
+        state.workload.fillBookings();
+    }
+
+    @Benchmark
+    public int deleteBooking(Full state) {
+        return state.workload.deleteRemembered();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object getBookingsByUserName(Filled state) {
+        return state.workload.getBookingsByUserName();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object getBookingsByUserId(Filled state) {
+        return state.workload.getBookingsByUserId();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Empty extends WorkloadState {
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            createWorkload();
+        }
+
+        @Setup(Level.Invocation)
+        public void clear() {
+            workload.clearBookings();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Full extends WorkloadState {
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            createWorkload();
+        }
+
+        @Setup(Level.Invocation)
+        public void fill() {
+            workload.fillBookings();
+            workload.rememberBookings();
+        }
+    }
+
+    // Filled once, for the lookups.
+    @State(Scope.Benchmark)
+    public static class Filled extends WorkloadState {
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            createWorkload();
+            workload.fillBookings();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// MainMenu's saving and loading of users and bookings. Each state works in a temporary directory of its own and
+// never touches the real data files.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Benchmark
+    public void saveUsersToFile(Journal state) {
+        state.workload.saveUsersToFile();
+    }
+
+    @Benchmark
+    public void loadUsersFromFile(Journal state) {
+        state.workload.loadUsersFromFile();
+    }
+
+    @Benchmark
+    public void saveBookingsToFile(Journal state) {
+        state.workload.saveBookingsToFile();
+    }
+
+    @Benchmark
+    public void loadBookingsFromJournal(Journal state) {
+        state.workload.loadBookingsFromFile();
+    }
+
+    @Benchmark
+    public void loadBookingsFromSnapshot(Snapshot state) {
+        state.workload.loadBookingsFromFile();
+    }
+
+    // Saved without a snapshot, so bookings load by replaying the journal.
+    @State(Scope.Benchmark)
+    public static class Journal extends WorkloadState {
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            createWorkload();
+            workload.fillBookings();
+            workload.saveFiles(false);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            workload.deleteFiles();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Snapshot extends WorkloadState {
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            createWorkload();
+            workload.fillBookings();
+            workload.saveFiles(true);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            workload.deleteFiles();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.io.IOException;
+
+// What the benchmarks drive. JMH will not generate code for benchmarks in the default package, and a class in a
+// named package cannot refer to the application's default-package classes, so the benchmarks only see this
+// interface; BenchmarkWorkload, in the default package, implements it over the real classes. Methods that compute
+// something return it, so JMH can keep the JIT from discarding the work.
+public interface Workload {
+    // Builds branches × rooms, with days of bookable slots from tomorrow, and bookings / 10 customers. The store is
+    // "object" or "columnar".
+    void setUp(int branches, int rooms, int days, int bookings, String store) throws IOException;
+
+    void clearBookings();
+
+    // Books the same slots every time, walking rooms, days and hours in order, up to the bookings parameter or
+    // until the data set is full.
+    void fillBookings();
+
+    // Remembers the bookings now in place, for deleteRemembered().
+    void rememberBookings();
+
+    int deleteRemembered();
+
+    Object getBookingsByUserName();
+
+    Object getBookingsByUserId();
+
+    Object getAvailableRooms();
+
+    Object cachedGetAvailableRooms();
+
+    Object findBestFitRoom();
+
+    boolean isAvailable();
+
+    // Books a random slot of a scratch schedule and frees it again, so the schedule never fills up.
+    Object bookAndFreeSlot();
+
+    // Saves users and bookings to a new temporary directory, with a snapshot or without one, for the load and
+    // save benchmarks. deleteFiles() removes the directory.
+    void saveFiles(boolean snapshot) throws IOException;
+
+    void saveUsersToFile();
+
+    void loadUsersFromFile();
+
+    void saveBookingsToFile();
+
+    void loadBookingsFromFile();
+
+    void deleteFiles();
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// The data set the benchmarks share: branches × rooms × days, with bookings spread over them. Every combination of
+// the parameters is run; override them on the command line with -p, e.g. -p bookings=10000,100000.
+@State(Scope.Benchmark)
+public abstract class WorkloadState {
+    @Param({ "2" })
+    public int branches;
+
+    @Param({ "20" })
+    public int rooms;
+
+    @Param({ "30" })
+    public int days;
+
+    @Param({ "10000" })
+    public int bookings;
+
+    @Param({ "object", "columnar" })
+    public String store;
+
+    protected Workload workload;
+
+    protected void createWorkload() throws IOException {
+        try {
+            workload = (Workload) Class.forName("BenchmarkWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkWorkload is missing from the benchmark jar.", e);
+        }
+        workload.setUp(branches, rooms, days, bookings, store);
+    }
+}
\ No newline at end of file
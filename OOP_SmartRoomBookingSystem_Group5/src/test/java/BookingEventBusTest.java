@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BookingEventBusTest {
+    private BookingEventBus bus;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null) {
+            bus.stop(1_000);
+        }
+    }
+
+    @Test
+    void everyEventReachesEveryConsumerInOrder() throws Exception {
+        bus = new BookingEventBus(64);
+        List<String> first = Collections.synchronizedList(new ArrayList<>());
+        List<String> second = Collections.synchronizedList(new ArrayList<>());
+        bus.addConsumer("first", (event, sequence, endOfBatch) -> first.add(event.getId()));
+        bus.addConsumer("second", (event, sequence, endOfBatch) -> second.add(event.getId()));
+        bus.start();
+
+        // Several producers, many more events than slots, so producers have to wait for the consumers.
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    bus.publishBookingCancelled(producer + ":" + i);
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(bus.drain(10_000));
+        assertEquals(4_000, first.size());
+        assertEquals(first, second);
+        for (int p = 0; p < 4; p++) {
+            int last = -1;
+            for (String id : first) {
+                if (id.startsWith(p + ":")) {
+                    int i = Integer.parseInt(id.substring(id.indexOf(':') + 1));
+                    assertEquals(last + 1, i);
+                    last = i;
+                }
+            }
+        }
+    }
+
+    @Test
+    void aFailedEventIsRetriedInsteadOfSkipped() {
+        bus = new BookingEventBus(8);
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        AtomicInteger failuresSeen = new AtomicInteger();
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        bus.addConsumer("flaky", new BookingEventHandler() {
+            @Override
+            public void onEvent(BookingEvent event, long sequence, boolean endOfBatch) throws Exception {
+                if (event.getId().equals("B2") && failuresLeft.getAndDecrement() > 0) {
+                    throw new IllegalStateException("disk full");
+                }
+                handled.add(event.getId());
+            }
+
+            @Override
+            public void onFailure(long sequence, Exception cause) {
+                failuresSeen.incrementAndGet();
+            }
+        });
+        bus.start();
+
+        bus.publishBookingCancelled("B1");
+        bus.publishBookingCancelled("B2");
+        bus.publishBookingCancelled("B3");
+
+        assertTrue(bus.drain(10_000));
+        assertEquals(List.of("B1", "B2", "B3"), handled);
+        assertEquals(2, failuresSeen.get());
+    }
+
+    @Test
+    void publishAllMarksAllButTheLastEventAsContinued() {
+        bus = new BookingEventBus(8);
+        List<Boolean> continued = Collections.synchronizedList(new ArrayList<>());
+        bus.addConsumer("runs", (event, sequence, endOfBatch) -> continued.add(event.isContinued()));
+        bus.start();
+
+        bus.publishAll(List.of(
+                BookingEvent.of(BookingEvent.Type.BOOKING_CANCELLED, "B1", null, null),
+                BookingEvent.of(BookingEvent.Type.BOOKING_CANCELLED, "B2", null, null),
+                BookingEvent.of(BookingEvent.Type.SERIES_CANCELLED, "RS1", null, null)));
+
+        assertTrue(bus.drain(10_000));
+        assertEquals(List.of(true, true, false), continued);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BookingJournalTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 7);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void separatorsAndLineBreaksInFieldsRoundTrip() {
+        Branch branch = new Branch("A|B\\x\ny");
+        SmartRoom room = new SmartRoom("R|1\\", "Small", 4);
+        branch.addRoom(room);
+        Booking booking = new Booking("BK0001", new Customer("C1", "Alice", "secret"), branch, room, DATE,
+                LocalTime.of(9, 0), LocalTime.of(10, 0));
+
+        String line = BookingJournal.formatCreate(booking);
+
+        assertFalse(line.contains("\n"));
+        assertArrayEquals(new String[] { "C", "BK0001", "C1", "A|B\\x\ny", "R|1\\", "2030-01-07", "09:00", "10:00",
+                "0" }, BookingJournal.parseRecord(line));
+    }
+
+    @Test
+    void olderRecordsLoadWithoutEndTimeOrHeadcount() {
+        assertArrayEquals(new String[] { "C", "BK1", "C1", "Old\\Name", "R1", "2030-01-07", "09:00", null, null },
+                BookingJournal.parseRecord("C|BK1|C1|Old\\Name|R1|2030-01-07|09:00"));
+        assertArrayEquals(new String[] { "C", "BK2", "C1", "PSZ, UTMJB", "R1", "2030-01-07", "09:00", null, null },
+                BookingJournal.parseRecord("BK2,C1,PSZ, UTMJB,R1,2030-01-07,09:00"));
+    }
+
+    @Test
+    void loaderAppliesTheLastScheduleOfEachBranchAndKeepsHeadcounts() throws Exception {
+        Customer customer = new Customer("C1", "Alice", "secret");
+        Branch saved = new Branch("PSZ");
+        SmartRoom room = new SmartRoom("P101", "Large", 12);
+        saved.addRoom(room);
+        String firstSchedule = BookingJournal.formatSchedule(saved);
+        saved.getSchedule().restore(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.SATURDAY), LocalTime.of(7, 30),
+                LocalTime.MIDNIGHT, Set.of(DATE));
+        Booking booking = new Booking("BK0001", customer, saved, room, DATE.plusDays(5), LocalTime.of(9, 0),
+                LocalTime.of(10, 0));
+        booking.setHeadcount(9);
+        Path file = directory.resolve("bookings.txt");
+        Files.write(file, List.of(firstSchedule, BookingJournal.formatCreate(booking),
+                BookingJournal.formatSchedule(saved), "H|Gone|MONDAY|08:00|20:00|"));
+
+        Branch branch = new Branch("PSZ");
+        branch.addRoom(new SmartRoom("P101", "Large", 12));
+        BookingManager bookingManager = new BookingManager();
+        BookingFileLoader loader = new BookingFileLoader(Map.of("C1", customer), List.of(branch));
+        loader.load(file.toString(), 0, bookingManager);
+
+        assertTrue(loader.getProblems().isEmpty(), loader.getProblems().toString());
+        BranchSchedule schedule = branch.getSchedule();
+        assertEquals(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.SATURDAY), schedule.getOperatingDays());
+        assertEquals(LocalTime.of(7, 30), schedule.getOpeningTime());
+        assertEquals(LocalTime.MIDNIGHT, schedule.getClosingTime());
+        assertEquals(Set.of(DATE), schedule.getHolidays());
+        assertFalse(schedule.isOperatingDay(DATE));
+        assertEquals(9, bookingManager.getBookingById("BK0001").getHeadcount());
+    }
+
+    @Test
+    void compactionKeepsSchedulesAndLiveBookingsOnly() throws Exception {
+        Customer customer = new Customer("C1", "Alice", "secret");
+        Branch branch = new Branch("PSZ");
+        SmartRoom room = new SmartRoom("P101", "Small", 4);
+        branch.addRoom(room);
+        branch.getSchedule().addHoliday(DATE);
+        Booking kept = new Booking("BK0001", customer, branch, room, DATE.plusDays(1), LocalTime.of(9, 0),
+                LocalTime.of(10, 0));
+        BookingJournal journal = new BookingJournal(directory.resolve("bookings.txt").toString(), false);
+        journal.appendCreate(kept);
+        journal.appendCreate(new Booking("BK0002", customer, branch, room, DATE.plusDays(2), LocalTime.of(9, 0),
+                LocalTime.of(10, 0)));
+        journal.appendDelete("BK0002");
+
+        journal.compact(() -> List.of(branch), () -> List.of(kept), List::of);
+
+        List<String[]> records = journal.readRecords();
+        journal.close();
+        assertEquals(2, records.size());
+        assertEquals(BookingJournal.SCHEDULE, records.get(0)[0]);
+        assertEquals("2030-01-07", records.get(0)[5]);
+        assertEquals("BK0001", records.get(1)[1]);
+        assertNull(BookingJournal.parseRecord("H|PSZ|MONDAY|08:00|20:00"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookingManagerTest {
+    private static final LocalTime NINE = LocalTime.of(9, 0);
+    private static final LocalTime TEN = LocalTime.of(10, 0);
+
+    private BookingManager bookingManager;
+    private Branch branch;
+    private SmartRoom small;
+    private SmartRoom large;
+    private Customer customer;
+    // A Monday far enough ahead to be bookable, when the branch is open.
+    private LocalDate monday;
+
+    @BeforeEach
+    void setUp() {
+        bookingManager = new BookingManager();
+        branch = new Branch("PSZ");
+        small = new SmartRoom("P101", "Small", 4);
+        large = new SmartRoom("P201", "Large", 12);
+        branch.addRoom(small);
+        branch.addRoom(large);
+        customer = new Customer("C001", "Alice", "secret");
+        monday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY)).plusWeeks(1);
+    }
+
+    @Test
+    void concurrentBookingsOfOneSlotLetExactlyOneThrough() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    bookingManager.createBooking(customer, branch, small, monday, NINE, TEN);
+                    booked.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    // Someone else got the slot.
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(1, booked.get());
+        assertEquals(1, bookingManager.getBookingsByRoomAndDate(small, monday).size());
+    }
+
+    @Test
+    void createBookingsBooksAllOrNothing() {
+        bookingManager.createBooking(customer, branch, large, monday, NINE, TEN);
+        List<BookingRequest> requests = List.of(
+                new BookingRequest(customer, branch, small, monday, NINE, TEN),
+                new BookingRequest(customer, branch, large, monday, NINE, TEN));
+
+        assertThrows(IllegalStateException.class, () -> bookingManager.createBookings(requests));
+        assertTrue(small.getSchedule().isAvailable(monday, NINE, TEN));
+        assertEquals(1, bookingManager.getBookingCount());
+    }
+
+    @Test
+    void bookingARemovedRoomFails() {
+        assertTrue(bookingManager.removeRoom(branch, small));
+
+        assertThrows(IllegalStateException.class,
+                () -> bookingManager.createBooking(customer, branch, small, monday, NINE, TEN));
+        assertThrows(IllegalStateException.class, () -> bookingManager.createBookings(
+                List.of(new BookingRequest(customer, branch, small, monday, NINE, TEN))));
+        assertFalse(bookingManager.removeRoom(branch, small));
+    }
+
+    // Whatever gets booked into the room while it is being removed must show up in the removal's impact, or the
+    // cascade would leave it behind in a room that no longer exists.
+    @Test
+    void bookingsRacingARoomRemovalAreAllInItsImpact() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            setUp();
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Thread> bookers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                Thread booker = new Thread(() -> {
+                    for (int i = 0; !stop.get(); i++) {
+                        try {
+                            bookingManager.createBooking(customer, branch, small, monday.plusDays(i * 4L + offset),
+                                    NINE, TEN);
+                        } catch (IllegalStateException e) {
+                            // The room is gone.
+                        }
+                    }
+                });
+                bookers.add(booker);
+                booker.start();
+            }
+            Thread.sleep(1);
+            bookingManager.removeRoom(branch, small);
+            BookingImpact impact = bookingManager.impactOfRoomRemoval(branch, small);
+            Thread.sleep(1);
+            stop.set(true);
+            for (Thread booker : bookers) {
+                booker.join();
+            }
+
+            assertEquals(bookingManager.getBookingsByRoom(small).size(), impact.getBookings().size());
+        }
+    }
+
+    @Test
+    void cascadeMovesAPartyToTheSmallestRoomThatSeatsIt() {
+        SmartRoom medium = new SmartRoom("P102", "Small", 6);
+        branch.addRoom(medium);
+        Booking party = bookingManager.createBookings(
+                List.of(new BookingRequest(customer, branch, large, monday, NINE, TEN, 5))).get(0);
+
+        assertTrue(bookingManager.removeRoom(branch, large));
+        BookingImpact.Outcome outcome = bookingManager.cascade(bookingManager.impactOfRoomRemoval(branch, large),
+                BookingImpact.Action.RELOCATE, List.of(branch));
+
+        Booking moved = outcome.getRelocated().get(party);
+        assertSame(medium, moved.getRoom());
+        assertEquals(5, moved.getHeadcount());
+        assertTrue(large.getSchedule().isAvailable(monday, NINE, TEN));
+        assertNull(bookingManager.getBookingById(party.getBookingId()));
+    }
+
+    @Test
+    void removingABranchCancelsWhatItStillHolds() {
+        bookingManager.createBooking(customer, branch, small, monday, NINE, TEN);
+        bookingManager.addBookingFromFile("BK9000", customer, branch, large, LocalDate.now().minusDays(3), NINE, TEN);
+
+        bookingManager.removeBranch(branch);
+
+        assertEquals(0, bookingManager.getBookingCount());
+        assertTrue(small.getSchedule().isAvailable(monday, NINE, TEN));
+    }
+
+    @Test
+    void columnarStoreKeepsTheHeadcount() {
+        bookingManager = new BookingManager(ColumnarBookingStore::new);
+        Booking booking = bookingManager.createBookings(
+                List.of(new BookingRequest(customer, branch, large, monday, NINE, TEN, 7))).get(0);
+
+        assertEquals(7, bookingManager.getBookingById(booking.getBookingId()).getHeadcount());
+    }
+}
\ No newline at end of file
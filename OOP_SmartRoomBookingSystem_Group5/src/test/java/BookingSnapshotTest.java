@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BookingSnapshotTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 7);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsSchedulesRemovedRoomsAndHeadcounts() throws Exception {
+        Customer customer = new Customer("C001", "Alice", "secret");
+        Branch branch = new Branch("PSZ");
+        SmartRoom kept = new SmartRoom("P101", "Small", 4);
+        SmartRoom removed = new SmartRoom("P201", "Large", 12);
+        branch.addRoom(kept);
+        branch.addRoom(removed);
+        branch.getSchedule().restore(EnumSet.of(DayOfWeek.TUESDAY), LocalTime.of(9, 0), LocalTime.MIDNIGHT,
+                Set.of(DATE.plusDays(1)));
+        Booking past = new Booking("BK0001", customer, branch, removed, LocalDate.now().minusDays(2),
+                LocalTime.of(9, 0), LocalTime.of(10, 0));
+        past.setHeadcount(8);
+        branch.deleteRoom("P201");
+
+        BookingSnapshot snapshot = new BookingSnapshot(directory.resolve("bookings.snapshot").toString());
+        snapshot.write(List.of(customer), List.of(branch), List.of(past), List.of(), 0, 0);
+        BookingSnapshot loaded = new BookingSnapshot(directory.resolve("bookings.snapshot").toString());
+        loaded.load();
+
+        Branch restored = loaded.getBranches().get(0);
+        assertEquals(List.of("P101"), roomIds(restored.getRooms()));
+        assertEquals(List.of("P201"), roomIds(restored.getRemovedRooms()));
+        assertEquals(LocalDate.now(), restored.getRemovedOn(restored.getRemovedRooms().get(0)));
+        BranchSchedule schedule = restored.getSchedule();
+        assertEquals(EnumSet.of(DayOfWeek.TUESDAY), schedule.getOperatingDays());
+        assertEquals(LocalTime.MIDNIGHT, schedule.getClosingTime());
+        assertEquals(Set.of(DATE.plusDays(1)), schedule.getHolidays());
+        BookingSnapshot.Entry entry = loaded.getBookings().get(0);
+        assertEquals("P201", entry.room.getRoomId());
+        assertEquals(8, entry.headcount);
+    }
+
+    // Archived bookings of a room removed since are still counted, by room ID, up to the day it was removed.
+    @Test
+    void archivedBookingsCountAgainstARestoredRemovedRoom() throws Exception {
+        Branch branch = new Branch("PSZ");
+        SmartRoom room = new SmartRoom("P101", "Small", 4);
+        branch.addRoom(room);
+        branch.deleteRoom("P101");
+        BookingSnapshot snapshot = new BookingSnapshot(directory.resolve("bookings.snapshot").toString());
+        snapshot.write(List.of(), List.of(branch), List.of(), List.of(), 0, 0);
+        BookingSnapshot loaded = new BookingSnapshot(directory.resolve("bookings.snapshot").toString());
+        loaded.load();
+        Branch restored = loaded.getBranches().get(0);
+        LocalDate lastMonth = LocalDate.now().minusMonths(1);
+        restored.sealOccupancyBefore(LocalDate.now().withDayOfMonth(1));
+
+        assertTrue(restored.addArchivedOccupancy("P101", lastMonth, LocalTime.of(13, 0), LocalTime.of(14, 30)));
+        byte[] minutes = restored.getBookedMinutesByHour(restored.getRemovedRooms().get(0), lastMonth);
+        assertArrayEquals(new byte[] { 60, 30 }, new byte[] { minutes[13], minutes[14] });
+        assertEquals(false, restored.addArchivedOccupancy("P101", LocalDate.now().plusDays(1), LocalTime.of(13, 0),
+                LocalTime.of(14, 0)));
+    }
+
+    private static List<String> roomIds(List<SmartRoom> rooms) {
+        return rooms.stream().map(SmartRoom::getRoomId).toList();
+    }
+}
\ No newline at end of file
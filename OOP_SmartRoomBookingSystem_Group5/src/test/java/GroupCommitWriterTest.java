@@ -0,0 +1,131 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GroupCommitWriterTest {
+    private static final int ROOMS = 4;
+
+    @TempDir
+    Path directory;
+
+    private String journalFile;
+    private BookingJournal journal;
+    private BookingEventBus bus;
+    private GroupCommitWriter writer;
+    private BookingManager bookingManager;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        journalFile = directory.resolve("bookings.txt").toString();
+        journal = new BookingJournal(journalFile, false);
+        bus = new BookingEventBus(256);
+        writer = new GroupCommitWriter(journal, bus, 32, 0);
+        bus.addConsumer("journal", writer);
+        writer.start();
+        bus.start();
+        bookingManager = new BookingManager();
+        bookingManager.setEventBus(bus);
+        customer = new Customer("C001", "Alice", "secret");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        bus.stop(1_000);
+        journal.close();
+    }
+
+    @Test
+    void whenDurableCompletesOnceTheRecordIsInTheJournal() throws Exception {
+        Branch branch = branch();
+        Booking booking = bookingManager.createBooking(customer, branch, branch.getRooms().get(0),
+                LocalDate.now().plusDays(7), LocalTime.of(9, 0), LocalTime.of(10, 0));
+
+        writer.whenDurable().get(10, TimeUnit.SECONDS);
+
+        List<String[]> records = journal.readRecords();
+        assertEquals(1, records.size());
+        assertEquals(booking.getBookingId(), records.get(0)[1]);
+    }
+
+    // Compacting while bookings keep coming must neither drop a record nor leave one behind that repeats or
+    // contradicts the rewritten journal: replaying it has to give back exactly the live bookings.
+    @Test
+    void compactionWhileBookingLosesNothing() throws Exception {
+        Branch branch = branch();
+        List<Thread> bookers = new ArrayList<>();
+        for (int r = 0; r < ROOMS; r++) {
+            SmartRoom room = branch.getRooms().get(r);
+            Thread booker = new Thread(() -> {
+                for (int day = 0; day < 300; day++) {
+                    Booking booking = bookingManager.createBooking(customer, branch, room,
+                            LocalDate.now().plusDays(day + 1), LocalTime.of(9, 0), LocalTime.of(10, 0));
+                    if (day % 3 == 0) {
+                        bookingManager.deleteBooking(booking.getBookingId());
+                    }
+                }
+            });
+            bookers.add(booker);
+            booker.start();
+        }
+        for (int i = 0; i < 20; i++) {
+            bookingManager.runExclusive(() -> {
+                awaitJournal();
+                journal.compact(() -> List.of(branch), bookingManager::getAllBookings, bookingManager::getAllSeries);
+            });
+        }
+        for (Thread booker : bookers) {
+            booker.join();
+        }
+        awaitJournal();
+
+        BookingManager replayed = new BookingManager();
+        BookingFileLoader loader = new BookingFileLoader(Map.of(customer.getUserId(), customer), List.of(branch()));
+        loader.load(journalFile, 0, replayed);
+
+        assertTrue(loader.getProblems().isEmpty(), loader.getProblems().toString());
+        assertEquals(ids(bookingManager.getAllBookings()), ids(replayed.getAllBookings()));
+        assertEquals(ROOMS * 200, replayed.getBookingCount());
+    }
+
+    private void awaitJournal() throws IOException {
+        try {
+            writer.whenDurable().get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Branch branch() {
+        Branch branch = new Branch("PSZ");
+        for (int r = 0; r < ROOMS; r++) {
+            branch.addRoom(new SmartRoom("P10" + r, "Small", 4));
+        }
+        return branch;
+    }
+
+    private static Set<String> ids(List<Booking> bookings) {
+        Set<String> ids = new TreeSet<>();
+        for (Booking booking : bookings) {
+            ids.add(booking.getBookingId());
+        }
+        return ids;
+    }
+}
\ No newline at end of file